@@ -1,9 +1,12 @@
 package com.pm.apigateway;
 
+import com.pm.apigateway.loadbalancer.LeastOutstandingLoadBalancerConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 
 @SpringBootApplication
+@LoadBalancerClients(defaultConfiguration = LeastOutstandingLoadBalancerConfiguration.class)
 public class ApiGatewayApplication {
 
     public static void main(String[] args) {
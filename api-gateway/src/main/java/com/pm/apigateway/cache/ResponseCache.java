@@ -0,0 +1,91 @@
+package com.pm.apigateway.cache;
+
+import org.springframework.http.MediaType;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ResponseCache {
+    // Bounded LRU of successful GET responses for one route. Every write through the route bumps the
+    // generation, which both clears the cache and stops responses that were already in flight from being stored.
+
+    private final Duration timeToLive;
+    private final Map<String, CachedResponse> entries;
+    private long generation;
+
+    public ResponseCache(int maxEntries, Duration timeToLive) {
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized CachedResponse get(String key) {
+        CachedResponse cached = entries.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt().isAfter(Instant.now())) {
+            return cached;
+        }
+        entries.remove(key);
+        return null;
+    }
+
+    /// Generation to pass back to put, read before the request is forwarded upstream
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /// Stores the response unless the cache was invalidated since the request started
+    public synchronized CachedResponse put(String key, long requestGeneration, byte[] body, MediaType contentType) {
+        CachedResponse cached = new CachedResponse(body, contentType, etagOf(body), Instant.now().plus(timeToLive));
+        if (requestGeneration == generation) {
+            entries.put(key, cached);
+        }
+        return cached;
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /// Strong ETag derived from the response bytes, so identical bodies always revalidate
+    public static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /// Whether an If-None-Match header value matches the given ETag
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public record CachedResponse(byte[] body, MediaType contentType, String etag, Instant expiresAt) {
+    }
+}
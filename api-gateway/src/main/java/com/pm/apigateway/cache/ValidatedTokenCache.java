@@ -0,0 +1,107 @@
+package com.pm.apigateway.cache;
+
+import com.pm.apigateway.model.JwtClaims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+public class ValidatedTokenCache {
+    // Bounded LRU cache of tokens that already passed validation. Entries never outlive the token's own
+    // "exp" claim, and concurrent first-time validations of the same token share one upstream call.
+
+    private final Duration maxTtl;
+    private final Map<String, CachedToken> entries;
+    private final Map<String, Mono<JwtClaims>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public ValidatedTokenCache(@Value("${jwt.cache.max-entries:10000}") int maxEntries,
+                               @Value("${jwt.cache.max-ttl:5m}") Duration maxTtl,
+                               MeterRegistry meterRegistry) {
+        this.maxTtl = maxTtl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = meterRegistry.counter("gateway.jwt.cache", "result", "hit");
+        this.misses = meterRegistry.counter("gateway.jwt.cache", "result", "miss");
+        this.coalesced = meterRegistry.counter("gateway.jwt.cache", "result", "coalesced");
+        Gauge.builder("gateway.jwt.cache.size", this, ValidatedTokenCache::size).register(meterRegistry);
+    }
+
+    /// Returns the cached claims for the token, or validates it with the loader.
+    /// A failed validation is never cached, so the next request retries it.
+    public Mono<JwtClaims> get(String token, Function<String, Mono<JwtClaims>> loader) {
+        CachedToken cached = lookup(token);
+        if (cached != null) {
+            hits.increment();
+            return Mono.just(cached.claims());
+        }
+
+        Mono<JwtClaims> load = Mono.defer(() -> loader.apply(token))
+                .doOnNext(claims -> put(token, claims))
+                .doFinally(signal -> inFlight.remove(token))
+                .cache();
+
+        Mono<JwtClaims> pending = inFlight.putIfAbsent(token, load);
+        if (pending != null) {
+            coalesced.increment();
+            return pending;
+        }
+        misses.increment();
+        return load;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private CachedToken lookup(String token) {
+        synchronized (entries) {
+            CachedToken cached = entries.get(token);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt().isAfter(Instant.now())) {
+                return cached;
+            }
+            entries.remove(token);
+            return null;
+        }
+    }
+
+    private void put(String token, JwtClaims claims) {
+        // Expire at the token's own expiry, but never later than the configured max TTL
+        Instant expiresAt = Instant.now().plus(maxTtl);
+        if (claims.expiresAt() != null && claims.expiresAt().isBefore(expiresAt)) {
+            expiresAt = claims.expiresAt();
+        }
+        if (!expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(token, new CachedToken(claims, expiresAt));
+        }
+    }
+
+    private record CachedToken(JwtClaims claims, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.pm.apigateway.filter;
+
+import com.pm.apigateway.ratelimit.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class ClientRateLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ClientRateLimitGatewayFilterFactory.Config> {
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+
+    /// Trust the last X-Forwarded-For hop, which is the one added by our load balancer
+    private final RemoteAddressResolver remoteAddressResolver = XForwardedRemoteAddressResolver.maxTrustedIndex(1);
+
+    public ClientRateLimitGatewayFilterFactory(TokenBucketRateLimiter rateLimiter, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("replenishRate", "burstCapacity", "ipReplenishRate", "ipBurstCapacity");
+    }
+
+    /// Limits each JWT subject and each client IP separately, rejecting with 429 once either bucket is empty.
+    /// A request rejected by the IP limit gets its subject token back, so it costs the user nothing.
+    /// Must come after JwtValidation in the route's filters so the verified subject is available.
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            String routeId = routeId(exchange);
+
+            String subject = exchange.getRequest().getHeaders().getFirst(JwtValidationGatewayFilterFactory.SUBJECT_HEADER);
+            String subjectKey = subject != null && config.getReplenishRate() > 0 ? routeId + "|sub|" + subject : null;
+            if (subjectKey != null) {
+                long waitNanos = rateLimiter.tryAcquire(subjectKey, config.getReplenishRate(), config.getBurstCapacity());
+                if (waitNanos > 0) {
+                    return tooManyRequests(exchange, routeId, "subject", waitNanos);
+                }
+            }
+
+            String ip = clientIp(exchange);
+            if (ip != null && config.getIpReplenishRate() > 0) {
+                long waitNanos = rateLimiter.tryAcquire(routeId + "|ip|" + ip,
+                        config.getIpReplenishRate(), config.getIpBurstCapacity());
+                if (waitNanos > 0) {
+                    if (subjectKey != null) {
+                        rateLimiter.release(subjectKey, config.getReplenishRate());
+                    }
+                    return tooManyRequests(exchange, routeId, "ip", waitNanos);
+                }
+            }
+
+            return chain.filter(exchange);
+        };
+    }
+
+    private Mono<Void> tooManyRequests(ServerWebExchange exchange, String routeId, String limitedBy, long waitNanos) {
+        meterRegistry.counter("gateway.rate-limit.rejected", "route", routeId, "key", limitedBy).increment();
+
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return exchange.getResponse().setComplete();
+    }
+
+    private String clientIp(ServerWebExchange exchange) {
+        InetSocketAddress address = remoteAddressResolver.resolve(exchange);
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    private String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+
+    /// Per-route limits in requests per second, a rate of 0 disables that limit
+    public static class Config {
+        private double replenishRate;
+        private int burstCapacity;
+        private double ipReplenishRate;
+        private int ipBurstCapacity;
+
+        public double getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(double replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+
+        public double getIpReplenishRate() {
+            return ipReplenishRate;
+        }
+
+        public void setIpReplenishRate(double ipReplenishRate) {
+            this.ipReplenishRate = ipReplenishRate;
+        }
+
+        public int getIpBurstCapacity() {
+            return ipBurstCapacity;
+        }
+
+        public void setIpBurstCapacity(int ipBurstCapacity) {
+            this.ipBurstCapacity = ipBurstCapacity;
+        }
+    }
+}
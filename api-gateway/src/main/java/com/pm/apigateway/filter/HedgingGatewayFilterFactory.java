@@ -0,0 +1,397 @@
+package com.pm.apigateway.filter;
+
+import com.pm.apigateway.loadbalancer.InstanceHealthRegistry;
+import com.pm.apigateway.loadbalancer.LeastOutstandingLoadBalancer;
+import com.pm.apigateway.metrics.LatencyHistogram;
+import com.pm.apigateway.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Component
+public class HedgingGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgingGatewayFilterFactory.Config> {
+
+    private final WebClient webClient;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFilters;
+    private final LoadBalancerClientFactory loadBalancerClientFactory;
+    private final InstanceHealthRegistry healthRegistry;
+    private final MeterRegistry meterRegistry;
+
+    public HedgingGatewayFilterFactory(WebClient.Builder webClientBuilder,
+                                       ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                       LoadBalancerClientFactory loadBalancerClientFactory,
+                                       InstanceHealthRegistry healthRegistry,
+                                       MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.webClient = webClientBuilder.build();
+        this.headersFilters = headersFilters;
+        this.loadBalancerClientFactory = loadBalancerClientFactory;
+        this.healthRegistry = healthRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /// Opt-in tail-latency control for a route. GET requests get a second, hedged request once the first one
+    /// has been outstanding longer than the route's recent hedgePercentile latency, and whichever response
+    /// arrives first is streamed back. On lb:// routes the hedge goes to a different instance. Every request also passes a circuit breaker that fails fast with 503
+    /// while the upstream's failure rate is above failureRateThreshold.
+    /// Runs after the request URL is resolved and takes over routing for GET requests.
+    @Override
+    public GatewayFilter apply(Config config) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(config.getFailureRateThreshold(), config.getSlidingWindowSize(),
+                config.getMinimumCalls(), config.getOpenDuration(), config.getHalfOpenCalls(), config.getHalfOpenTimeout());
+        LatencyWindow latencies = new LatencyWindow(config.getLatencyWindow());
+        AtomicBoolean gaugeRegistered = new AtomicBoolean();
+
+        GatewayFilter filter = (exchange, chain) -> {
+            String routeId = routeId(exchange);
+            if (gaugeRegistered.compareAndSet(false, true)) {
+                registerBreakerGauge(routeId, circuitBreaker);
+            }
+
+            if (!circuitBreaker.tryAcquire()) {
+                return serviceUnavailable(exchange, routeId, circuitBreaker);
+            }
+
+            // The permit is reported back exactly once: on the outcome, or released if the exchange is cancelled first
+            AtomicBoolean reported = new AtomicBoolean();
+
+            if (!HttpMethod.GET.equals(exchange.getRequest().getMethod())) {
+                return chain.filter(exchange)
+                        .doOnSuccess(v -> recordOutcome(circuitBreaker, reported, exchange.getResponse().getStatusCode()))
+                        .doOnError(e -> recordFailure(circuitBreaker, reported))
+                        .doOnCancel(() -> release(circuitBreaker, reported));
+            }
+
+            Duration hedgeDelay = latencies.hedgeDelay(config);
+            long start = System.nanoTime();
+
+            URI url = exchange.getRequiredAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+            Mono<ResponseEntity<Flux<DataBuffer>>> primary = send(exchange, url, config);
+            Mono<ResponseEntity<Flux<DataBuffer>>> hedged = Mono.delay(hedgeDelay)
+                    .doOnNext(tick -> meterRegistry.counter("gateway.hedge.sent", "route", routeId).increment())
+                    .then(sendHedge(exchange, url, config))
+                    .doOnNext(response -> meterRegistry.counter("gateway.hedge.won", "route", routeId).increment());
+
+            return Mono.firstWithValue(primary, hedged)
+                    .doOnError(e -> recordFailure(circuitBreaker, reported))
+                    .flatMap(response -> {
+                        long elapsed = System.nanoTime() - start;
+                        latencies.record(elapsed);
+                        exchange.getAttributes().put(LatencyMetricsFilter.UPSTREAM_NANOS_ATTR, elapsed);
+                        recordOutcome(circuitBreaker, reported, response.getStatusCode());
+                        return write(exchange, response);
+                    })
+                    .doOnCancel(() -> release(circuitBreaker, reported));
+        };
+
+        // After RouteToRequestUrlFilter and the load balancer have resolved the upstream URL
+        return new OrderedGatewayFilter(filter, ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1);
+    }
+
+    /// Sends the request upstream and emits as soon as the response headers arrive, the body is streamed later
+    private Mono<ResponseEntity<Flux<DataBuffer>>> send(ServerWebExchange exchange, URI url, Config config) {
+        HttpHeaders headers = HttpHeadersFilter.filterRequest(headersFilters.getIfAvailable(), exchange);
+        headers.remove(HttpHeaders.HOST);
+
+        return Mono.defer(() -> webClient.get()
+                .uri(url)
+                .headers(h -> h.addAll(headers))
+                .retrieve()
+                // Pass every status through to the client instead of turning 4xx/5xx into errors
+                .onStatus(status -> true, response -> Mono.empty())
+                .toEntityFlux(DataBuffer.class)
+                .timeout(config.getResponseTimeout()));
+    }
+
+    /// Sends the hedged request to another instance than the load balancer picked for the first one.
+    /// Requests that were not load balanced, or services with a single instance, are hedged to the same URL.
+    private Mono<ResponseEntity<Flux<DataBuffer>>> sendHedge(ServerWebExchange exchange, URI url, Config config) {
+        Response<ServiceInstance> chosen = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (chosen == null || !chosen.hasServer()) {
+            return send(exchange, url, config);
+        }
+
+        String primaryInstance = InstanceHealthRegistry.keyOf(chosen.getServer());
+        Map<String, Object> attributes = new HashMap<>(exchange.getAttributes());
+        attributes.put(LeastOutstandingLoadBalancer.EXCLUDED_INSTANCE_ATTR, primaryInstance);
+        DefaultRequest<RequestDataContext> request =
+                new DefaultRequest<>(new RequestDataContext(new RequestData(exchange.getRequest(), attributes)));
+
+        ReactorServiceInstanceLoadBalancer loadBalancer = loadBalancerClientFactory.getInstance(
+                chosen.getServer().getServiceId(), ReactorServiceInstanceLoadBalancer.class);
+        if (loadBalancer == null) {
+            return send(exchange, url, config);
+        }
+
+        return Mono.defer(() -> loadBalancer.choose(request)).flatMap(response -> {
+            if (!response.hasServer() || InstanceHealthRegistry.keyOf(response.getServer()).equals(primaryInstance)) {
+                return send(exchange, url, config);
+            }
+            ServiceInstance instance = response.getServer();
+            URI hedgeUrl = UriComponentsBuilder.fromUri(url)
+                    .host(instance.getHost())
+                    .port(instance.getPort())
+                    .build(true)
+                    .toUri();
+
+            // The gateway's load balancer lifecycle only sees the first request, track the hedge here
+            long start = healthRegistry.onStart(instance);
+            AtomicBoolean completed = new AtomicBoolean();
+            return send(exchange, hedgeUrl, config)
+                    .doOnNext(entity -> {
+                        if (completed.compareAndSet(false, true)) {
+                            healthRegistry.onComplete(instance, start, entity.getStatusCode().is5xxServerError());
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (completed.compareAndSet(false, true)) {
+                            healthRegistry.onComplete(instance, start, true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (completed.compareAndSet(false, true)) {
+                            healthRegistry.onComplete(instance, start, false);
+                        }
+                    });
+        });
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, ResponseEntity<Flux<DataBuffer>> upstream) {
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(upstream.getStatusCode());
+        response.getHeaders().putAll(HttpHeadersFilter.filter(headersFilters.getIfAvailable(),
+                upstream.getHeaders(), exchange, HttpHeadersFilter.Type.RESPONSE));
+        Flux<DataBuffer> body = upstream.getBody() != null ? upstream.getBody() : Flux.empty();
+        return response.writeWith(body);
+    }
+
+    private void recordOutcome(CircuitBreaker circuitBreaker, AtomicBoolean reported, HttpStatusCode status) {
+        if (status != null && status.is5xxServerError()) {
+            recordFailure(circuitBreaker, reported);
+        } else if (reported.compareAndSet(false, true)) {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    private void recordFailure(CircuitBreaker circuitBreaker, AtomicBoolean reported) {
+        if (reported.compareAndSet(false, true)) {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private void release(CircuitBreaker circuitBreaker, AtomicBoolean reported) {
+        if (reported.compareAndSet(false, true)) {
+            circuitBreaker.release();
+        }
+    }
+
+    private Mono<Void> serviceUnavailable(ServerWebExchange exchange, String routeId, CircuitBreaker circuitBreaker) {
+        meterRegistry.counter("gateway.circuit-breaker.rejected", "route", routeId).increment();
+
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(circuitBreaker.remainingOpenTime().toMillis() / 1000.0));
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return exchange.getResponse().setComplete();
+    }
+
+    private void registerBreakerGauge(String routeId, CircuitBreaker circuitBreaker) {
+        // 0 = closed, 1 = open, 2 = half-open
+        Gauge.builder("gateway.circuit-breaker.state", circuitBreaker, cb -> cb.state().ordinal())
+                .tag("route", routeId)
+                .register(meterRegistry);
+    }
+
+    private String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+
+    /// Upstream latencies of the route over the current and the previous window, so the hedge delay
+    /// follows recent behaviour instead of everything since startup
+    private static class LatencyWindow {
+        private final long windowNanos;
+        private final AtomicReference<LatencyHistogram> current = new AtomicReference<>(new LatencyHistogram());
+        private volatile LatencyHistogram previous = new LatencyHistogram();
+        private volatile long windowStart = System.nanoTime();
+
+        LatencyWindow(Duration window) {
+            this.windowNanos = window.toNanos();
+        }
+
+        void record(long nanos) {
+            long now = System.nanoTime();
+            if (now - windowStart >= windowNanos) {
+                synchronized (this) {
+                    if (now - windowStart >= windowNanos) {
+                        previous = current.getAndSet(new LatencyHistogram());
+                        windowStart = now;
+                    }
+                }
+            }
+            current.get().record(nanos);
+        }
+
+        Duration hedgeDelay(Config config) {
+            LatencyHistogram histogram = previous.count() >= config.getMinimumSamples() ? previous : current.get();
+            if (histogram.count() < config.getMinimumSamples()) {
+                return config.getMaxHedgeDelay();
+            }
+            Duration delay = Duration.ofNanos(histogram.percentileMicros(config.getHedgePercentile()) * 1000);
+            if (delay.compareTo(config.getMinHedgeDelay()) < 0) {
+                return config.getMinHedgeDelay();
+            }
+            return delay.compareTo(config.getMaxHedgeDelay()) > 0 ? config.getMaxHedgeDelay() : delay;
+        }
+    }
+
+    public static class Config {
+        /// Hedging
+        private double hedgePercentile = 95;
+        private Duration minHedgeDelay = Duration.ofMillis(10);
+        private Duration maxHedgeDelay = Duration.ofMillis(500);
+        private int minimumSamples = 50;
+        private Duration latencyWindow = Duration.ofMinutes(1);
+        private Duration responseTimeout = Duration.ofSeconds(10);
+
+        /// Circuit breaker
+        private double failureRateThreshold = 50;
+        private int slidingWindowSize = 50;
+        private int minimumCalls = 20;
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenCalls = 3;
+        private Duration halfOpenTimeout = Duration.ofSeconds(30);
+
+        public double getHedgePercentile() {
+            return hedgePercentile;
+        }
+
+        public void setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+        }
+
+        public Duration getMinHedgeDelay() {
+            return minHedgeDelay;
+        }
+
+        public void setMinHedgeDelay(Duration minHedgeDelay) {
+            this.minHedgeDelay = minHedgeDelay;
+        }
+
+        public Duration getMaxHedgeDelay() {
+            return maxHedgeDelay;
+        }
+
+        public void setMaxHedgeDelay(Duration maxHedgeDelay) {
+            this.maxHedgeDelay = maxHedgeDelay;
+        }
+
+        public int getMinimumSamples() {
+            return minimumSamples;
+        }
+
+        public void setMinimumSamples(int minimumSamples) {
+            this.minimumSamples = minimumSamples;
+        }
+
+        public Duration getLatencyWindow() {
+            return latencyWindow;
+        }
+
+        public void setLatencyWindow(Duration latencyWindow) {
+            this.latencyWindow = latencyWindow;
+        }
+
+        public Duration getResponseTimeout() {
+            return responseTimeout;
+        }
+
+        public void setResponseTimeout(Duration responseTimeout) {
+            this.responseTimeout = responseTimeout;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        public Duration getHalfOpenTimeout() {
+            return halfOpenTimeout;
+        }
+
+        public void setHalfOpenTimeout(Duration halfOpenTimeout) {
+            this.halfOpenTimeout = halfOpenTimeout;
+        }
+    }
+}
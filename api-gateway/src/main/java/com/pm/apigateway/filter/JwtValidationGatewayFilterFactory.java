@@ -1,21 +1,41 @@
 package com.pm.apigateway.filter;
 
+import com.pm.apigateway.cache.ValidatedTokenCache;
+import com.pm.apigateway.model.JwtClaims;
+import com.pm.apigateway.util.JwtUtil;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
 
 @Component
 public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
 
+    /// Headers carrying the verified claims to downstream services
+    public static final String SUBJECT_HEADER = "X-Auth-Subject";
+    public static final String ROLE_HEADER = "X-Auth-Role";
+
     private final WebClient webClient;
+    private final JwtUtil jwtUtil;
+    private final ValidatedTokenCache tokenCache;
 
     /// Constructor to initialize WebClient with the authentication service URL
     public  JwtValidationGatewayFilterFactory(WebClient.Builder webClientBuilder,
-                                              @Value("${auth.service.url}") String authServiceUrl) {
+                                              @Value("${auth.service.url}") String authServiceUrl,
+                                              JwtUtil jwtUtil,
+                                              ValidatedTokenCache tokenCache) {
         this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+        this.jwtUtil = jwtUtil;
+        this.tokenCache = tokenCache;
     }
 
     /// Applies the filter logic to validate JWT tokens
@@ -27,17 +47,59 @@ public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFact
 
             // If the token is missing or doesn't start with "Bearer ", respond with 401 Unauthorized
             if(token == null || !token.startsWith("Bearer ")){
-                exchange.getResponse().setStatusCode(org.springframework.http.HttpStatus.UNAUTHORIZED);
-                return exchange.getResponse().setComplete();
+                return unauthorized(exchange);
             }
+            String jwt = token.substring(7);
 
-            // Call the auth service to validate the token
-            return webClient.get()
-                    .uri("/validate")
-                    .header(HttpHeaders.AUTHORIZATION, token)
-                    .retrieve()
-                    .toBodilessEntity()
-                    .then(chain.filter(exchange));
+            // Reuse an earlier validation of the same token when possible
+            long validationStart = System.nanoTime();
+            return tokenCache.get(jwt, this::validateToken)
+                    .map(Optional::of)
+                    .onErrorResume(this::isInvalidToken, e -> Mono.just(Optional.empty()))
+                    .doOnNext(claims -> exchange.getAttributes()
+                            .put(LatencyMetricsFilter.JWT_NANOS_ATTR, System.nanoTime() - validationStart))
+                    .flatMap(claims -> claims.isPresent()
+                            ? chain.filter(withClaims(exchange, claims.get()))
+                            : unauthorized(exchange));
         };
     }
+
+    /// Verifies the token locally when the gateway shares the signing key with the auth service,
+    /// otherwise falls back to the auth service to validate the token
+    private Mono<JwtClaims> validateToken(String jwt) {
+        if (jwtUtil.isLocalValidationEnabled()) {
+            return Mono.fromCallable(() -> jwtUtil.validateToken(jwt));
+        }
+        return webClient.get()
+                .uri("/validate")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwt)
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> jwtUtil.readClaims(jwt));
+    }
+
+    private boolean isInvalidToken(Throwable e) {
+        return e instanceof JwtException || e instanceof WebClientResponseException.Unauthorized;
+    }
+
+    /// Forwards the verified claims downstream, replacing any values the client may have sent itself
+    private ServerWebExchange withClaims(ServerWebExchange exchange, JwtClaims claims) {
+        return exchange.mutate()
+                .request(request -> request.headers(headers -> {
+                    headers.remove(SUBJECT_HEADER);
+                    headers.remove(ROLE_HEADER);
+                    if (claims.subject() != null) {
+                        headers.set(SUBJECT_HEADER, claims.subject());
+                    }
+                    if (claims.role() != null) {
+                        headers.set(ROLE_HEADER, claims.role());
+                    }
+                }))
+                .build();
+    }
+
+    private Mono<Void> unauthorized(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().setComplete();
+    }
 }
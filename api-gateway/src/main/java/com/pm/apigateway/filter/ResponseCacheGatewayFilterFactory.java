@@ -0,0 +1,148 @@
+package com.pm.apigateway.filter;
+
+import com.pm.apigateway.cache.ResponseCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    /// Exchange attribute telling ResponseCacheWriteFilter where to store the upstream response
+    public static final String PENDING_WRITE_ATTR = ResponseCacheGatewayFilterFactory.class.getName() + ".pendingWrite";
+    static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final Set<HttpMethod> WRITE_METHODS =
+            Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+
+    private final MeterRegistry meterRegistry;
+
+    public ResponseCacheGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /// Caches 200 responses to GET requests keyed by path, query and the caller's role, and answers
+    /// If-None-Match revalidations with 304. Any successful POST, PUT, PATCH or DELETE through the same route
+    /// clears the cache.
+    /// Must come after JwtValidation in the route's filters so the verified role is part of the key.
+    @Override
+    public GatewayFilter apply(Config config) {
+        ResponseCache cache = new ResponseCache(config.getMaxEntries(), config.getTimeToLive());
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+
+            if (!HttpMethod.GET.equals(request.getMethod())) {
+                if (!WRITE_METHODS.contains(request.getMethod())) {
+                    return chain.filter(exchange);
+                }
+                // Invalidate before the client sees the write's response, so its next read can't hit a stale entry
+                exchange.getResponse().beforeCommit(() -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    if (status != null && status.is2xxSuccessful()) {
+                        cache.invalidateAll();
+                    }
+                    return Mono.empty();
+                });
+                return chain.filter(exchange);
+            }
+
+            String key = cacheKey(request);
+            String ifNoneMatch = request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+
+            ResponseCache.CachedResponse cached = cache.get(key);
+            if (cached != null) {
+                return writeCached(exchange, cached, ifNoneMatch);
+            }
+
+            // The response itself is captured by ResponseCacheWriteFilter once the upstream answers
+            exchange.getAttributes().put(PENDING_WRITE_ATTR, new PendingWrite(
+                    cache, key, cache.generation(), ifNoneMatch, config.getMaxBodyBytes()));
+            return chain.filter(exchange);
+        };
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, ResponseCache.CachedResponse cached, String ifNoneMatch) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setETag(cached.etag());
+        response.getHeaders().setCacheControl(CacheControl.noCache().cachePrivate());
+        response.getHeaders().set(CACHE_STATUS_HEADER, "HIT");
+
+        if (ResponseCache.matches(ifNoneMatch, cached.etag())) {
+            meterRegistry.counter("gateway.response.cache", "result", "not_modified").increment();
+            return notModified(response);
+        }
+
+        meterRegistry.counter("gateway.response.cache", "result", "hit").increment();
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            response.getHeaders().setContentType(cached.contentType());
+        }
+        response.getHeaders().setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    static Mono<Void> notModified(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        response.getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+        response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        return response.setComplete();
+    }
+
+    /// Requests for the same resource by different roles may see different data, so they never share an entry
+    private String cacheKey(ServerHttpRequest request) {
+        String role = request.getHeaders().getFirst(JwtValidationGatewayFilterFactory.ROLE_HEADER);
+        String query = request.getURI().getRawQuery();
+        return request.getURI().getRawPath()
+                + (query != null ? "?" + query : "")
+                + "|" + (role != null ? role : "");
+    }
+
+    record PendingWrite(ResponseCache cache, String key, long generation, String ifNoneMatch, int maxBodyBytes) {
+    }
+
+    public static class Config {
+        private int maxEntries = 1000;
+        private Duration timeToLive = Duration.ofSeconds(30);
+        private int maxBodyBytes = 1024 * 1024;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public int getMaxBodyBytes() {
+            return maxBodyBytes;
+        }
+
+        public void setMaxBodyBytes(int maxBodyBytes) {
+            this.maxBodyBytes = maxBodyBytes;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.pm.apigateway.filter;
+
+import com.pm.apigateway.cache.ResponseCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Component
+public class ResponseCacheWriteFilter implements GlobalFilter, Ordered {
+    // Stores upstream responses for the ResponseCache route filter. It has to wrap the response before
+    // NettyWriteResponseFilter writes it, which happens ahead of any route filter, so it is a separate global filter.
+
+    private final MeterRegistry meterRegistry;
+
+    public ResponseCacheWriteFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpResponseDecorator cachingResponse = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                ResponseCacheGatewayFilterFactory.PendingWrite pending =
+                        exchange.getAttribute(ResponseCacheGatewayFilterFactory.PENDING_WRITE_ATTR);
+                if (pending == null || !HttpStatus.OK.equals(getStatusCode()) || !isCacheable(getHeaders())) {
+                    return super.writeWith(body);
+                }
+
+                long contentLength = getHeaders().getContentLength();
+                if (contentLength > pending.maxBodyBytes()) {
+                    return super.writeWith(body);
+                }
+
+                // Buffers the body until it is complete or larger than maxBodyBytes, whichever comes first
+                AtomicLong received = new AtomicLong();
+                return Flux.<DataBuffer>from(body)
+                        .bufferUntil(buffer -> received.addAndGet(buffer.readableByteCount()) > pending.maxBodyBytes())
+                        .switchOnFirst((first, chunks) -> {
+                            Flux<DataBuffer> buffers = chunks.concatMapIterable(Function.identity());
+                            if (received.get() > pending.maxBodyBytes()) {
+                                // Too large to cache: pass what was read so far and the rest through as they come
+                                return super.writeWith(buffers);
+                            }
+                            return DataBufferUtils.join(buffers)
+                                    .map(joined -> {
+                                        byte[] bytes = new byte[joined.readableByteCount()];
+                                        joined.read(bytes);
+                                        DataBufferUtils.release(joined);
+                                        return bytes;
+                                    })
+                                    .defaultIfEmpty(new byte[0])
+                                    .flatMap(bytes -> store(pending, bytes));
+                        })
+                        .then();
+            }
+
+            private Mono<Void> store(ResponseCacheGatewayFilterFactory.PendingWrite pending, byte[] bytes) {
+                ResponseCache.CachedResponse stored = pending.cache()
+                        .put(pending.key(), pending.generation(), bytes, getHeaders().getContentType());
+                meterRegistry.counter("gateway.response.cache", "result", "miss").increment();
+                getHeaders().setETag(stored.etag());
+                getHeaders().set(ResponseCacheGatewayFilterFactory.CACHE_STATUS_HEADER, "MISS");
+                if (getHeaders().getCacheControl() == null) {
+                    getHeaders().setCacheControl(CacheControl.noCache().cachePrivate());
+                }
+
+                if (ResponseCache.matches(pending.ifNoneMatch(), stored.etag())) {
+                    return ResponseCacheGatewayFilterFactory.notModified(getDelegate());
+                }
+                return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+            }
+        };
+
+        return chain.filter(exchange.mutate().response(cachingResponse).build());
+    }
+
+    private boolean isCacheable(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        return cacheControl == null || !cacheControl.contains("no-store");
+    }
+}
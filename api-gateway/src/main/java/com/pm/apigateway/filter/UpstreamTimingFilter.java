@@ -0,0 +1,26 @@
+package com.pm.apigateway.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+    // Runs right before NettyRoutingFilter and measures the time until the upstream's response headers arrive
+
+    @Override
+    public int getOrder() {
+        return NettyRoutingFilter.ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange).doOnSuccess(v -> exchange.getAttributes()
+                .put(LatencyMetricsFilter.UPSTREAM_NANOS_ATTR, System.nanoTime() - start));
+    }
+}
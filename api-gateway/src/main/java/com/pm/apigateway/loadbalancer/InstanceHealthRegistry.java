@@ -0,0 +1,162 @@
+package com.pm.apigateway.loadbalancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class InstanceHealthRegistry {
+    // Live view of every upstream instance the gateway talks to: requests in flight, a moving average of
+    // response time and recent failures. Instances that keep failing, or that are much slower than their
+    // peers, are ejected for a while (passive outlier detection) and skipped by the load balancer.
+
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final int consecutiveFailures;
+    private final double latencyFactor;
+    private final long minLatencyNanos;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final double maxEjectionPercent;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Map<String, InstanceStats>> services = new ConcurrentHashMap<>();
+
+    public InstanceHealthRegistry(@Value("${gateway.load-balancer.ejection.consecutive-failures:5}") int consecutiveFailures,
+                                  @Value("${gateway.load-balancer.ejection.latency-factor:3.0}") double latencyFactor,
+                                  @Value("${gateway.load-balancer.ejection.min-latency:200ms}") Duration minLatency,
+                                  @Value("${gateway.load-balancer.ejection.base-time:30s}") Duration baseEjectionTime,
+                                  @Value("${gateway.load-balancer.ejection.max-time:5m}") Duration maxEjectionTime,
+                                  @Value("${gateway.load-balancer.ejection.max-percent:50}") double maxEjectionPercent,
+                                  MeterRegistry meterRegistry) {
+        this.consecutiveFailures = consecutiveFailures;
+        this.latencyFactor = latencyFactor;
+        this.minLatencyNanos = minLatency.toNanos();
+        this.baseEjectionNanos = baseEjectionTime.toNanos();
+        this.maxEjectionNanos = maxEjectionTime.toNanos();
+        this.maxEjectionPercent = maxEjectionPercent;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public InstanceStats stats(ServiceInstance instance) {
+        return services.computeIfAbsent(instance.getServiceId(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(keyOf(instance), key -> {
+                    InstanceStats stats = new InstanceStats();
+                    Gauge.builder("gateway.lb.outstanding", stats, s -> s.outstanding.get())
+                            .tags("service", instance.getServiceId(), "instance", key)
+                            .register(meterRegistry);
+                    Gauge.builder("gateway.lb.ejected", stats, s -> s.isEjected(System.nanoTime()) ? 1 : 0)
+                            .tags("service", instance.getServiceId(), "instance", key)
+                            .register(meterRegistry);
+                    return stats;
+                });
+    }
+
+    /// Marks a request to the instance as started, returns the start time to hand back to onComplete
+    public long onStart(ServiceInstance instance) {
+        stats(instance).outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void onComplete(ServiceInstance instance, long startNanos, boolean failure) {
+        long now = System.nanoTime();
+        InstanceStats stats = stats(instance);
+        stats.outstanding.decrementAndGet();
+        stats.recordLatency(now - startNanos);
+
+        if (failure) {
+            if (stats.failures.incrementAndGet() >= consecutiveFailures) {
+                eject(instance, stats, now);
+            }
+        } else {
+            stats.failures.set(0);
+            // Healthy for a full max ejection time since the last ejection, forget the ejection history
+            long until = stats.ejectedUntil;
+            if (until != 0 && now - until > maxEjectionNanos) {
+                stats.ejections.set(0);
+                stats.ejectedUntil = 0;
+            }
+            if (isLatencyOutlier(instance, stats)) {
+                eject(instance, stats, now);
+            }
+        }
+    }
+
+    public boolean isEjected(ServiceInstance instance) {
+        return stats(instance).isEjected(System.nanoTime());
+    }
+
+    public static String keyOf(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    /// Slow compared to the median of its peers, which only makes sense with at least three instances
+    private boolean isLatencyOutlier(ServiceInstance instance, InstanceStats stats) {
+        double latency = stats.ewmaNanos;
+        if (latency < minLatencyNanos) {
+            return false;
+        }
+        Map<String, InstanceStats> peers = services.get(instance.getServiceId());
+        double[] latencies = peers.values().stream()
+                .filter(peer -> peer != stats && peer.ewmaNanos > 0)
+                .mapToDouble(peer -> peer.ewmaNanos)
+                .toArray();
+        if (latencies.length < 2) {
+            return false;
+        }
+        Arrays.sort(latencies);
+        return latency > latencyFactor * latencies[latencies.length / 2];
+    }
+
+    private void eject(ServiceInstance instance, InstanceStats stats, long now) {
+        Map<String, InstanceStats> peers = services.get(instance.getServiceId());
+        synchronized (peers) {
+            if (stats.isEjected(now)) {
+                return;
+            }
+            long ejected = peers.values().stream().filter(peer -> peer.isEjected(now)).count();
+            if ((ejected + 1) * 100.0 / peers.size() > maxEjectionPercent) {
+                return;
+            }
+            // Every ejection in a row doubles the time out, an instance that recovers starts over
+            int times = stats.ejections.incrementAndGet();
+            long duration = Math.min(maxEjectionNanos, baseEjectionNanos << Math.min(times - 1, 16));
+            stats.ejectedUntil = now + duration;
+            stats.failures.set(0);
+            stats.ewmaNanos = 0;
+        }
+        meterRegistry.counter("gateway.lb.ejections", "service", instance.getServiceId(),
+                "instance", keyOf(instance)).increment();
+    }
+
+    public static class InstanceStats {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile long ejectedUntil;
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        boolean isEjected(long now) {
+            long until = ejectedUntil;
+            return until != 0 && now - until < 0;
+        }
+
+        private void recordLatency(long nanos) {
+            // Racing updates may lose a sample, which is fine for a moving average
+            double current = ewmaNanos;
+            ewmaNanos = current == 0 ? nanos : current + EWMA_WEIGHT * (nanos - current);
+        }
+    }
+}
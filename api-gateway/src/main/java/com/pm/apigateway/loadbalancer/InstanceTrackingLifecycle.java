@@ -0,0 +1,59 @@
+package com.pm.apigateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/// Feeds InstanceHealthRegistry from the gateway's load-balanced requests
+@Component
+public class InstanceTrackingLifecycle implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private static final String START_NANOS_ATTR = InstanceTrackingLifecycle.class.getName() + ".startNanos";
+
+    private final InstanceHealthRegistry healthRegistry;
+
+    public InstanceTrackingLifecycle(InstanceHealthRegistry healthRegistry) {
+        this.healthRegistry = healthRegistry;
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        // The gateway hands over the exchange attributes, so the start time travels with the request
+        attributes(request).put(START_NANOS_ATTR, healthRegistry.onStart(lbResponse.getServer()));
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        Object start = attributes(completionContext.getLoadBalancerRequest()).remove(START_NANOS_ATTR);
+        if (!(start instanceof Long startNanos)) {
+            return;
+        }
+
+        ResponseData response = completionContext.getClientResponse();
+        boolean failure = completionContext.status() == CompletionContext.Status.FAILED
+                || (response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError());
+        healthRegistry.onComplete(lbResponse.getServer(), startNanos, failure);
+    }
+
+    private Map<String, Object> attributes(Request<RequestDataContext> request) {
+        return request.getContext().getClientRequest().getAttributes();
+    }
+}
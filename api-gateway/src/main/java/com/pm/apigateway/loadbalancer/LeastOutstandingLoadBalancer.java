@@ -0,0 +1,85 @@
+package com.pm.apigateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class LeastOutstandingLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+    // Power-of-two-choices: pick two instances at random and send the request to the one with fewer requests
+    // in flight. Close to "least outstanding requests" without having every gateway request pile onto
+    // whichever instance looked idle a moment ago. Slow instances are handled by ejection, not here.
+
+    /// Request attribute with the host:port of an instance to avoid, used for hedged requests
+    public static final String EXCLUDED_INSTANCE_ATTR = LeastOutstandingLoadBalancer.class.getName() + ".excludedInstance";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> suppliers;
+    private final String serviceId;
+    private final InstanceHealthRegistry healthRegistry;
+
+    public LeastOutstandingLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> suppliers, String serviceId,
+                                        InstanceHealthRegistry healthRegistry) {
+        this.suppliers = suppliers;
+        this.serviceId = serviceId;
+        this.healthRegistry = healthRegistry;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = suppliers.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        Object excluded = excludedInstance(request);
+        return supplier.get(request).next().map(instances -> choose(instances, excluded));
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances, Object excluded) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+
+        // Skip ejected instances and the excluded one, unless that would leave nothing to pick from
+        List<ServiceInstance> candidates = instances.stream()
+                .filter(instance -> !healthRegistry.isEjected(instance))
+                .filter(instance -> !InstanceHealthRegistry.keyOf(instance).equals(excluded))
+                .toList();
+        if (candidates.isEmpty()) {
+            candidates = instances.stream().filter(instance -> !healthRegistry.isEjected(instance)).toList();
+        }
+        if (candidates.isEmpty()) {
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        return new DefaultResponse(lessLoaded(candidates.get(first), candidates.get(second)));
+    }
+
+    /// On a tie the first one wins, which is itself a random pick
+    private ServiceInstance lessLoaded(ServiceInstance a, ServiceInstance b) {
+        return healthRegistry.stats(b).outstanding() < healthRegistry.stats(a).outstanding() ? b : a;
+    }
+
+    private Object excludedInstance(Request request) {
+        if (request != null && request.getContext() instanceof RequestDataContext context
+                && context.getClientRequest() != null && context.getClientRequest().getAttributes() != null) {
+            return context.getClientRequest().getAttributes().get(EXCLUDED_INSTANCE_ATTR);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.pm.apigateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/// Load balancer for every lb:// route, registered through @LoadBalancerClients on the application class.
+/// Deliberately not a @Configuration: it is instantiated once per service in that service's child context.
+public class LeastOutstandingLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> leastOutstandingLoadBalancer(Environment environment,
+                                                                            LoadBalancerClientFactory clientFactory,
+                                                                            InstanceHealthRegistry healthRegistry) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LeastOutstandingLoadBalancer(
+                clientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), serviceId, healthRegistry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.pm.apigateway.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/// Publishes the per-route latency histograms at /actuator/routelatency, DELETE resets them.
+/// Only served on management.server.port, not on the gateway's public port.
+@Component
+@Endpoint(id = "routelatency")
+public class RouteLatencyEndpoint {
+
+    private final RouteLatencyRegistry registry;
+
+    public RouteLatencyEndpoint(RouteLatencyRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> latencies() {
+        return registry.snapshot();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        registry.reset();
+    }
+}
@@ -0,0 +1,59 @@
+package com.pm.apigateway.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RouteLatencyRegistry {
+    // Latency histograms per gateway route id, split into the phases of a request
+
+    public enum Phase {
+        /// Whole request as seen by the gateway, until the response is fully written
+        TOTAL,
+        /// JwtValidation filter, including any auth-service call
+        JWT,
+        /// From forwarding the request until the upstream's response headers arrive
+        UPSTREAM,
+        /// Everything else, i.e. TOTAL minus JWT and UPSTREAM
+        GATEWAY
+    }
+
+    private final Map<String, Map<Phase, LatencyHistogram>> routes = new ConcurrentHashMap<>();
+
+    public void record(String routeId, Phase phase, long durationNanos) {
+        histogram(routeId, phase).record(durationNanos);
+    }
+
+    public LatencyHistogram histogram(String routeId, Phase phase) {
+        return routes.computeIfAbsent(routeId, id -> {
+            Map<Phase, LatencyHistogram> phases = new ConcurrentHashMap<>();
+            for (Phase p : Phase.values()) {
+                phases.put(p, new LatencyHistogram());
+            }
+            return phases;
+        }).get(phase);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        routes.forEach((routeId, phases) -> {
+            Map<String, Object> route = new LinkedHashMap<>();
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = phases.get(phase);
+                if (histogram.count() > 0) {
+                    route.put(phase.name().toLowerCase(), histogram.snapshot());
+                }
+            }
+            snapshot.put(routeId, route);
+        });
+        return snapshot;
+    }
+
+    public void reset() {
+        routes.values().forEach(phases -> phases.values().forEach(LatencyHistogram::reset));
+    }
+}
@@ -0,0 +1,7 @@
+package com.pm.apigateway.model;
+
+import java.time.Instant;
+
+/// The claims the gateway forwards downstream once a token has been validated.
+public record JwtClaims(String subject, String role, Instant expiresAt) {
+}
@@ -0,0 +1,81 @@
+package com.pm.apigateway.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+@Component
+public class TokenBucketRateLimiter {
+    // In-memory token buckets, one per key. Each bucket is a single AtomicLong holding its "theoretical
+    // arrival time" (GCRA), so acquiring a token is one lock-free compare-and-set and buckets never block each other.
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+
+    public TokenBucketRateLimiter(@Value("${gateway.rate-limit.max-keys:100000}") int maxKeys) {
+        this(maxKeys, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(int maxKeys, LongSupplier nanoClock) {
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /// Takes one token from the bucket for the key.
+    /// Returns 0 when the request is allowed, otherwise the nanoseconds until a token becomes available.
+    public long tryAcquire(String key, double replenishRate, int burstCapacity) {
+        long now = nanoClock.getAsLong();
+        long interval = interval(replenishRate);
+        long tolerance = interval * Math.max(1, burstCapacity);
+
+        // A missing bucket is a full one, start it "now"
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + interval;
+            long allowAt = next - tolerance;
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                sweepIfNeeded(now);
+                return 0;
+            }
+        }
+    }
+
+    /// Puts back a token taken by tryAcquire, for a request that another limit turned away after all
+    public void release(String key, double replenishRate) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            long interval = interval(replenishRate);
+            bucket.updateAndGet(tat -> tat - interval);
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private static long interval(double replenishRate) {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / replenishRate);
+    }
+
+    /// Drops buckets that have refilled completely, they behave exactly like a missing bucket
+    private void sweepIfNeeded(long now) {
+        long last = lastSweep.get();
+        if (buckets.size() <= maxKeys || now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+    }
+}
@@ -0,0 +1,145 @@
+package com.pm.apigateway.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+public class CircuitBreaker {
+    // Count-based circuit breaker for one upstream. It opens once the failure rate over the last
+    // windowSize calls crosses the threshold, rejects calls while open, and lets a few trial calls
+    // through (half-open) after openDuration to decide whether to close again. Trial calls that have not
+    // decided within halfOpenTimeout open it again, so lost outcomes can't leave it half-open for good.
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final long halfOpenTimeoutNanos;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private long halfOpenedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls,
+                          Duration openDuration, int halfOpenCalls, Duration halfOpenTimeout) {
+        this(failureRateThreshold, windowSize, minimumCalls, openDuration, halfOpenCalls, halfOpenTimeout, System::nanoTime);
+    }
+
+    CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, Duration openDuration,
+                   int halfOpenCalls, Duration halfOpenTimeout, LongSupplier nanoClock) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.halfOpenTimeoutNanos = halfOpenTimeout.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /// Whether a call may go upstream now; every permitted call must be followed by exactly one of
+    /// onSuccess, onFailure or release
+    public synchronized boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        if (state == State.HALF_OPEN && now - halfOpenedAt >= halfOpenTimeoutNanos) {
+            open();
+        }
+        if (state == State.OPEN) {
+            if (now - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenedAt = now;
+            halfOpenPermits = 0;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        recordInWindow(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        recordInWindow(true);
+        if (windowCalls >= minimumCalls && (double) windowFailures / windowCalls * 100 >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /// Hands back a permitted call that ended without an outcome, e.g. because the client went away
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits > halfOpenSuccesses) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /// Time left until the breaker lets trial calls through again, zero unless it is open
+    public synchronized Duration remainingOpenTime() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openDurationNanos - (nanoClock.getAsLong() - openedAt)));
+    }
+
+    private void recordInWindow(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+}
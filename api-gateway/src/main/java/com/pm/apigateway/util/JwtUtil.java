@@ -0,0 +1,87 @@
+package com.pm.apigateway.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.apigateway.model.JwtClaims;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+@Component
+public class JwtUtil {
+    // Verifies tokens issued by the auth service with the same HMAC key material, so the gateway
+    // does not need a round trip to /validate for every request.
+    private static final Logger log = LoggerFactory.getLogger(JwtUtil.class);
+
+    private final JwtParser jwtParser;
+    private final ObjectMapper objectMapper;
+
+    /// Builds the parser once from the shared secret; local validation stays disabled when no secret is configured.
+    public JwtUtil(@Value("${jwt.secret:}") String secret, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        if (secret == null || secret.isBlank()) {
+            this.jwtParser = null;
+            log.warn("jwt.secret is not set, tokens will be validated by the auth service");
+            return;
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(keyBytes))
+                .build();
+    }
+
+    public boolean isLocalValidationEnabled() {
+        return jwtParser != null;
+    }
+
+    /// Validates the token's signature and expiry and returns its claims, throwing JwtException for invalid tokens.
+    public JwtClaims validateToken(String token) {
+        if (jwtParser == null) {
+            throw new IllegalStateException("Local JWT validation is not configured");
+        }
+        try {
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            return new JwtClaims(
+                    claims.getSubject(),
+                    claims.get("role", String.class),
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+        }
+        catch (SignatureException e) {
+            throw new JwtException("Invalid JWT signature");
+        }
+        catch (JwtException e) {
+            throw new JwtException("Invalid JWT token");
+        }
+    }
+
+    /// Reads the claims of a token WITHOUT checking its signature.
+    /// Only use this for tokens the auth service has already accepted.
+    public JwtClaims readClaims(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            throw new JwtException("Invalid JWT token");
+        }
+        try {
+            JsonNode payload = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            return new JwtClaims(
+                    payload.path("sub").asText(null),
+                    payload.path("role").asText(null),
+                    payload.hasNonNull("exp") ? Instant.ofEpochSecond(payload.get("exp").asLong()) : null);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            throw new JwtException("Invalid JWT token");
+        }
+    }
+}
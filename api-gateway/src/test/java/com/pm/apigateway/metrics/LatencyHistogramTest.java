@@ -0,0 +1,84 @@
+package com.pm.apigateway.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    void emptyHistogramReportsZero() {
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileMicros(99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (int micros = 1; micros <= 10; micros++) {
+            record(micros);
+        }
+
+        assertEquals(10, histogram.count());
+        assertEquals(5, histogram.percentileMicros(50));
+        assertEquals(9, histogram.percentileMicros(90));
+        assertEquals(10, histogram.percentileMicros(100));
+    }
+
+    @Test
+    void percentilesStayWithinTheBucketPrecision() {
+        for (int micros = 1; micros <= 100_000; micros++) {
+            record(micros);
+        }
+
+        assertWithinPrecision(50_000, histogram.percentileMicros(50));
+        assertWithinPrecision(90_000, histogram.percentileMicros(90));
+        assertWithinPrecision(99_000, histogram.percentileMicros(99));
+        assertWithinPrecision(99_900, histogram.percentileMicros(99.9));
+    }
+
+    @Test
+    void percentilesNeverExceedTheMaximum() {
+        record(1_000);
+
+        assertEquals(1_000, histogram.percentileMicros(50));
+        assertEquals(1_000, histogram.percentileMicros(100));
+    }
+
+    @Test
+    void resetClearsEverything() {
+        record(1_000);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileMicros(50));
+        assertEquals(0.0, histogram.snapshot().get("maxMs"));
+    }
+
+    @Test
+    void snapshotIsInMilliseconds() {
+        record(2_000);
+        record(4_000);
+
+        Map<String, Object> snapshot = histogram.snapshot();
+
+        assertEquals(2L, snapshot.get("count"));
+        assertEquals(3.0, snapshot.get("meanMs"));
+        assertEquals(4.0, snapshot.get("maxMs"));
+    }
+
+    private void record(long micros) {
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16,
+                "expected " + expected + " within 1/16 but was " + actual);
+    }
+}
@@ -0,0 +1,81 @@
+package com.pm.apigateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+    private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, now::get);
+
+    @Test
+    void allowsABurstThenReportsTheWait() {
+        assertEquals(0, rateLimiter.tryAcquire("a", 1, 2));
+        assertEquals(0, rateLimiter.tryAcquire("a", 1, 2));
+
+        assertEquals(SECOND, rateLimiter.tryAcquire("a", 1, 2));
+    }
+
+    @Test
+    void refillsAtTheReplenishRate() {
+        rateLimiter.tryAcquire("a", 2, 1);
+        assertEquals(SECOND / 2, rateLimiter.tryAcquire("a", 2, 1));
+
+        now.addAndGet(SECOND / 2);
+
+        assertEquals(0, rateLimiter.tryAcquire("a", 2, 1));
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsumeTokens() {
+        rateLimiter.tryAcquire("a", 1, 1);
+        rateLimiter.tryAcquire("a", 1, 1);
+        rateLimiter.tryAcquire("a", 1, 1);
+
+        now.addAndGet(SECOND);
+
+        assertEquals(0, rateLimiter.tryAcquire("a", 1, 1));
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        rateLimiter.tryAcquire("a", 1, 1);
+
+        assertEquals(0, rateLimiter.tryAcquire("b", 1, 1));
+    }
+
+    @Test
+    void releaseGivesTheTokenBack() {
+        rateLimiter.tryAcquire("a", 1, 1);
+
+        rateLimiter.release("a", 1);
+
+        assertEquals(0, rateLimiter.tryAcquire("a", 1, 1));
+        assertEquals(SECOND, rateLimiter.tryAcquire("a", 1, 1));
+    }
+
+    @Test
+    void releaseOfAnUnknownKeyIsIgnored() {
+        rateLimiter.release("a", 1);
+
+        assertEquals(0, rateLimiter.size());
+    }
+
+    @Test
+    void sweepDropsRefilledBucketsOnceOverMaxKeys() {
+        rateLimiter.tryAcquire("a", 1, 1);
+        rateLimiter.tryAcquire("b", 1, 1);
+        assertEquals(2, rateLimiter.size());
+
+        now.addAndGet(2 * SECOND);
+        rateLimiter.tryAcquire("c", 1, 1);
+
+        assertEquals(1, rateLimiter.size());
+    }
+}
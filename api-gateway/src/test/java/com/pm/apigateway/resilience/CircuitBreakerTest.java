@@ -0,0 +1,171 @@
+package com.pm.apigateway.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+    private static final Duration HALF_OPEN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final AtomicLong now = new AtomicLong();
+    // 50% threshold over 4 calls, at least 4 calls before it can open, 2 trial calls
+    private final CircuitBreaker breaker =
+            new CircuitBreaker(50, 4, 4, OPEN_DURATION, 2, HALF_OPEN_TIMEOUT, now::get);
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        fail(3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        succeed(2);
+        fail(2);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(OPEN_DURATION, breaker.remainingOpenTime());
+    }
+
+    @Test
+    void oldCallsLeaveTheWindow() {
+        fail(1);
+        succeed(4);
+        fail(1);
+
+        // The first failure has left the 4-call window, leaving 1 failure in 4
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void letsTrialCallsThroughAfterOpenDuration() {
+        trip();
+        advance(OPEN_DURATION);
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void closesWhenAllTrialCallsSucceed() {
+        trip();
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        // The window starts empty again
+        fail(3);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void reopensOnAFailedTrialCall() {
+        trip();
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void releasedTrialCallsFreeTheirPermit() {
+        trip();
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        breaker.release();
+        breaker.release();
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void releaseDoesNotUndoDecidedTrialCalls() {
+        trip();
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+        breaker.onSuccess();
+
+        breaker.release();
+        breaker.release();
+
+        // One permit left: the one that already succeeded can't be handed out again
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void undecidedHalfOpenStateTimesOutToOpen() {
+        trip();
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        // Both trial calls never report back
+        advance(HALF_OPEN_TIMEOUT);
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        advance(OPEN_DURATION);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void remainingOpenTimeIsZeroUnlessOpen() {
+        assertEquals(Duration.ZERO, breaker.remainingOpenTime());
+
+        trip();
+        advance(Duration.ofSeconds(4));
+
+        assertEquals(Duration.ofSeconds(6), breaker.remainingOpenTime());
+    }
+
+    private void trip() {
+        fail(4);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess();
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
@@ -3,14 +3,17 @@ package com.pm.authservice.controller;
 
 import com.pm.authservice.dto.LoginRequestDTO;
 import com.pm.authservice.dto.LoginResponseDTO;
+import com.pm.authservice.dto.TokenValidationBatchRequestDTO;
+import com.pm.authservice.dto.TokenValidationBatchResponseDTO;
 import com.pm.authservice.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,13 +22,14 @@ public class AuthController {
 
     @Operation(summary = "generate token for user login")
     @PostMapping("/login")
-    public ResponseEntity<LoginResponseDTO> login(@RequestBody LoginRequestDTO loginRequestDTO) {
-        Optional<String> tokenOptional = authService.authenticate(loginRequestDTO);
-        if(tokenOptional.isEmpty()){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-        String token = tokenOptional.get();
-        return ResponseEntity.ok(new LoginResponseDTO(token));
+    public CompletableFuture<ResponseEntity<LoginResponseDTO>> login(@RequestBody LoginRequestDTO loginRequestDTO) {
+        return authService.authenticate(loginRequestDTO).thenApply(tokenOptional -> {
+            if(tokenOptional.isEmpty()){
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            String token = tokenOptional.get();
+            return ResponseEntity.ok(new LoginResponseDTO(token));
+        });
     }
 
     @Operation(summary = "Validate token")
@@ -40,4 +44,11 @@ public class AuthController {
                 ? ResponseEntity.ok().build()
                 : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
+
+    @Operation(summary = "Validate many tokens at once")
+    @PostMapping("/validate/batch")
+    public ResponseEntity<TokenValidationBatchResponseDTO> validateTokens(
+            @Valid @RequestBody TokenValidationBatchRequestDTO request) {
+        return ResponseEntity.ok(new TokenValidationBatchResponseDTO(authService.validateTokens(request.getTokens())));
+    }
 }
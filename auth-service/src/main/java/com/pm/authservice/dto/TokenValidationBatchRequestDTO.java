@@ -0,0 +1,19 @@
+package com.pm.authservice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class TokenValidationBatchRequestDTO {
+
+    @NotEmpty(message = "Tokens must not be empty")
+    private List<String> tokens;
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
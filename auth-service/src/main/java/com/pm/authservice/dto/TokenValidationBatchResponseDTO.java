@@ -0,0 +1,17 @@
+package com.pm.authservice.dto;
+
+import java.util.List;
+
+public class TokenValidationBatchResponseDTO {
+
+    /// One result per requested token, in request order
+    private final List<TokenValidationResultDTO> results;
+
+    public TokenValidationBatchResponseDTO(List<TokenValidationResultDTO> results) {
+        this.results = results;
+    }
+
+    public List<TokenValidationResultDTO> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,42 @@
+package com.pm.authservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/// Outcome for one token of a batch; subject, role and expiresAt are only set for valid tokens
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenValidationResultDTO {
+
+    private final boolean valid;
+    private final String subject;
+    private final String role;
+    private final Instant expiresAt;
+
+    public TokenValidationResultDTO(boolean valid, String subject, String role, Instant expiresAt) {
+        this.valid = valid;
+        this.subject = subject;
+        this.role = role;
+        this.expiresAt = expiresAt;
+    }
+
+    public static TokenValidationResultDTO invalid() {
+        return new TokenValidationResultDTO(false, null, null, null);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,45 @@
+package com.pm.authservice.exception;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@ControllerAdvice
+public class GlobalExceptionHandler {
+
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<Map<String,String>> handleValidationException
+            (MethodArgumentNotValidException ex){
+
+        Map<String, String> errors = new HashMap<>();
+        ex.getBindingResult().getFieldErrors().forEach(
+                error ->  errors.put(error.getField(), error.getDefaultMessage()));
+        return ResponseEntity.badRequest().body(errors);
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<Map<String,String>> handleBatchTooLargeException(BatchTooLargeException ex) {
+        log.warn("Token batch too large");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(LoginCapacityExceededException.class)
+    public ResponseEntity<Map<String,String>> handleLoginCapacityExceededException(LoginCapacityExceededException ex) {
+        log.warn("Login rejected, BCrypt queue is full");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Too many login attempts, try again shortly");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+}
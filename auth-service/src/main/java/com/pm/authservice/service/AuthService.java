@@ -1,29 +1,51 @@
 package com.pm.authservice.service;
 
 import com.pm.authservice.dto.LoginRequestDTO;
+import com.pm.authservice.dto.TokenValidationResultDTO;
+import com.pm.authservice.exception.BatchTooLargeException;
+import com.pm.authservice.model.User;
 import com.pm.authservice.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordVerifier passwordVerifier;
     private final JwtUtil jwtUtil;
 
-    public Optional<String> authenticate(LoginRequestDTO loginRequestDTO) {
-        Optional<String> token = userService.findByEmail(loginRequestDTO.getEmail())
-                //Verify that the provided plaintext password matches the stored encoded password.
-                .filter(u -> passwordEncoder.matches(loginRequestDTO.getPassword(), u.getPassword()))
-                .map(u -> jwtUtil.generateToken(u.getEmail(), u.getRole()));
+    @Value("${auth.validate.batch.max-size:1000}")
+    private int maxBatchSize;
 
-        return token;
+    @Value("${auth.validate.batch.parallel-threshold:64}")
+    private int parallelThreshold;
+
+    /// Completes on the BCrypt pool, the request thread is free while the password is checked.
+    /// Throws LoginCapacityExceededException when the pool is saturated.
+    public CompletableFuture<Optional<String>> authenticate(LoginRequestDTO loginRequestDTO) {
+        Optional<User> user = userService.findByEmail(loginRequestDTO.getEmail());
+        if (user.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        //Verify that the provided plaintext password matches the stored encoded password.
+        return passwordVerifier.matches(loginRequestDTO.getPassword(), user.get().getPassword())
+                .thenApply(matches -> user.filter(u -> matches)
+                        .map(u -> jwtUtil.generateToken(u.getEmail(), u.getRole())));
     }
 
     public boolean validateToken(String token) {
@@ -35,4 +57,38 @@ public class AuthService {
             return false;
         }
     }
+
+    /// Validates every token of the batch, results come back in request order.
+    /// Null or blank entries are reported as invalid in their position.
+    /// Large batches are spread over the common fork-join pool, small ones are not worth the hand-off.
+    public List<TokenValidationResultDTO> validateTokens(List<String> tokens) {
+        if (tokens.size() > maxBatchSize) {
+            throw new BatchTooLargeException("At most " + maxBatchSize + " tokens per batch");
+        }
+
+        // The same token often shows up several times when a caller fans out for one user
+        List<String> distinct = tokens.stream().filter(AuthService::isPresent).distinct().toList();
+        Stream<String> stream = distinct.size() >= parallelThreshold ? distinct.parallelStream() : distinct.stream();
+        Map<String, TokenValidationResultDTO> results = stream
+                .collect(Collectors.toConcurrentMap(Function.identity(), this::validate));
+
+        return tokens.stream()
+                .map(token -> isPresent(token) ? results.get(token) : TokenValidationResultDTO.invalid())
+                .toList();
+    }
+
+    private static boolean isPresent(String token) {
+        return token != null && !token.isBlank();
+    }
+
+    private TokenValidationResultDTO validate(String token) {
+        try {
+            Claims claims = jwtUtil.parseClaims(token);
+            Instant expiresAt = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+            return new TokenValidationResultDTO(true, claims.getSubject(), claims.get("role", String.class), expiresAt);
+        }
+        catch (JwtException e){
+            return TokenValidationResultDTO.invalid();
+        }
+    }
 }
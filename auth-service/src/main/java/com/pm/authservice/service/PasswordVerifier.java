@@ -0,0 +1,90 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.exception.LoginCapacityExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+public class PasswordVerifier {
+    // Runs BCrypt checks on a dedicated pool sized to the CPU count instead of on Tomcat's request threads.
+    // BCrypt is pure CPU work, so more threads than cores only adds queueing; the queue is bounded so that a
+    // login storm is turned away quickly instead of pinning every servlet thread and starving /validate.
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejected;
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder,
+                            @Value("${auth.bcrypt.threads:0}") int threads,
+                            @Value("${auth.bcrypt.queue-capacity:64}") int queueCapacity,
+                            MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = Timer.builder("auth.bcrypt.duration")
+                .description("Time spent in BCrypt password checks")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.bcrypt.queue.wait")
+                .description("Time password checks waited for a BCrypt thread")
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("auth.bcrypt.rejected");
+        Gauge.builder("auth.bcrypt.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.bcrypt.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+        log.info("BCrypt pool: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /// Checks the password on the BCrypt pool.
+    /// Throws LoginCapacityExceededException right away when the pool's queue is full.
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return passwordEncoder.matches(rawPassword, encodedPassword);
+                } finally {
+                    hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginCapacityExceededException("Too many logins in progress");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,38 @@
+package com.pm.authservice.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/// Invalidation hook for user changes made outside this service, e.g. directly in the database.
+/// DELETE /actuator/usercache drops every entry, DELETE /actuator/usercache/{email} a single one.
+/// Only served on management.server.port, which the gateway does not route.
+@Component
+@Endpoint(id = "usercache")
+public class UserCacheEndpoint {
+
+    private final UserService userService;
+
+    public UserCacheEndpoint(UserService userService) {
+        this.userService = userService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> size() {
+        return Map.of("size", userService.cacheSize());
+    }
+
+    @DeleteOperation
+    public void invalidateAll() {
+        userService.invalidateAll();
+    }
+
+    @DeleteOperation
+    public void invalidate(@Selector String email) {
+        userService.invalidate(email);
+    }
+}
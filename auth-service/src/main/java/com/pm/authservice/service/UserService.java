@@ -2,19 +2,96 @@ package com.pm.authservice.service;
 
 import com.pm.authservice.model.User;
 import com.pm.authservice.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.swing.text.html.Option;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
 public class UserService {
+    // Users are looked up on every login but almost never change, so lookups are kept in a bounded LRU cache.
+    // Entries expire after a TTL, and emails that were not found are remembered for a much shorter time so a
+    // newly created user can log in soon even if nobody invalidates the entry.
 
     private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, CachedUser> cache;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserService(UserRepository userRepository,
+                       @Value("${auth.user-cache.max-entries:10000}") int maxEntries,
+                       @Value("${auth.user-cache.ttl:5m}") Duration ttl,
+                       @Value("${auth.user-cache.negative-ttl:30s}") Duration negativeTtl,
+                       MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = meterRegistry.counter("auth.user.cache", "result", "hit");
+        this.misses = meterRegistry.counter("auth.user.cache", "result", "miss");
+        Gauge.builder("auth.user.cache.size", this, UserService::cacheSize).register(meterRegistry);
+    }
 
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        long now = System.nanoTime();
+        synchronized (cache) {
+            CachedUser cached = cache.get(email);
+            if (cached != null && now - cached.expiresAt() < 0) {
+                hits.increment();
+                return Optional.ofNullable(cached.user());
+            }
+        }
+
+        misses.increment();
+        Optional<User> user = userRepository.findByEmail(email);
+        long expiresAt = System.nanoTime() + (user.isPresent() ? ttlNanos : negativeTtlNanos);
+        synchronized (cache) {
+            cache.put(email, new CachedUser(user.orElse(null), expiresAt));
+        }
+        return user;
+    }
+
+    /// Saves the user and drops its cached lookup, so a password or role change applies to the next login
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        invalidate(saved.getEmail());
+        return saved;
+    }
+
+    public void invalidate(String email) {
+        synchronized (cache) {
+            cache.remove(email);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /// user is null for an email that does not exist
+    private record CachedUser(User user, long expiresAt) {
     }
 }
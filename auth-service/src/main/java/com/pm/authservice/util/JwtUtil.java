@@ -1,6 +1,8 @@
 package com.pm.authservice.util;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
@@ -20,6 +22,8 @@ import java.util.Date;
 public class JwtUtil {
     // Utility for creating, signing and validating JSON Web Tokens (JWTs): provides token generation, claim extraction (e.g. subject, roles), expiration checks, token refreshing, and signature/secret management.
     private final Key secretKey;
+    /// Parsers are immutable and thread-safe, so one is shared by every validation
+    private final JwtParser parser;
 
     //constructor injection
     public JwtUtil(@Value("${jwt.secret}") String secret) {
@@ -27,6 +31,7 @@ public class JwtUtil {
         byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
 
         this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parser().verifyWith((SecretKey) secretKey).build();
         log.info("JWT_SECRET raw value: {}", secret);
         log.info("JWT_SECRET length: {}", secret.length());
 
@@ -47,17 +52,20 @@ public class JwtUtil {
 
     /// Validates the provided JWT token's signature and structure, throwing exceptions for invalid tokens.
     public void validateToken(String token) {
+        parseClaims(token);
+    }
+
+    /// Validates the token like validateToken and returns its claims.
+    public Claims parseClaims(String token) {
         try {
-            Jwts.parser().
-                    verifyWith((SecretKey) secretKey)
-                    .build()
-                    .parseSignedClaims(token);
-            log.info("Token validated successfully");
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            log.debug("Token validated successfully");
+            return claims;
         }
         catch (SignatureException e) {
             throw new JwtException("Invalid JWT signature");
         }
-        catch (JwtException e){
+        catch (JwtException | IllegalArgumentException e){
             throw new JwtException("Invalid JWT token");
         }
     }
@@ -0,0 +1,80 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.dto.TokenValidationResultDTO;
+import com.pm.authservice.exception.BatchTooLargeException;
+import com.pm.authservice.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthServiceTest {
+
+    private static final String SECRET = "p9J2R0aVxM7wLZ5Q9C4mXk8T0vFJwZ1bYcR2nH3E5sA=";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET);
+    private final AuthService authService = new AuthService(null, null, jwtUtil);
+
+    AuthServiceTest() {
+        ReflectionTestUtils.setField(authService, "maxBatchSize", 100);
+        ReflectionTestUtils.setField(authService, "parallelThreshold", 8);
+    }
+
+    @Test
+    void validateTokensKeepsRequestOrder() {
+        String token = jwtUtil.generateToken("jane@example.com", "ADMIN");
+
+        List<TokenValidationResultDTO> results = authService.validateTokens(List.of("garbage", token, token));
+
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).isValid());
+        assertTrue(results.get(1).isValid());
+        assertEquals("jane@example.com", results.get(1).getSubject());
+        assertEquals("ADMIN", results.get(1).getRole());
+        assertTrue(results.get(2).isValid());
+    }
+
+    @Test
+    void validateTokensReportsNullAndBlankTokensAsInvalid() {
+        String token = jwtUtil.generateToken("jane@example.com", "ADMIN");
+
+        List<TokenValidationResultDTO> results = authService.validateTokens(Arrays.asList(token, null, "", " "));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertFalse(results.get(2).isValid());
+        assertFalse(results.get(3).isValid());
+    }
+
+    @Test
+    void validateTokensHandlesNullTokensInParallelBatches() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tokens.add(jwtUtil.generateToken("user" + i + "@example.com", "USER"));
+        }
+        tokens.add(null);
+
+        List<TokenValidationResultDTO> results = authService.validateTokens(tokens);
+
+        assertEquals(21, results.size());
+        assertTrue(results.get(19).isValid());
+        assertEquals("user19@example.com", results.get(19).getSubject());
+        assertFalse(results.get(20).isValid());
+    }
+
+    @Test
+    void validateTokensRejectsOversizedBatches() {
+        List<String> tokens = Collections.nCopies(101, "token");
+
+        assertThrows(BatchTooLargeException.class, () -> authService.validateTokens(tokens));
+    }
+}
@@ -1,7 +1,11 @@
 package com.pm.billingservicegrpc.grpc;
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
+import com.pm.billingservicegrpc.service.BillingAccountService;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 import billing.BillingServiceGrpc.BillingServiceImplBase;
@@ -12,16 +16,43 @@ import org.slf4j.LoggerFactory;
 public class BillingGrpcService extends BillingServiceImplBase {
     private static final Logger log = LoggerFactory.getLogger(BillingGrpcService.class);
 
+    private final BillingAccountService billingAccountService;
+
+    public BillingGrpcService(BillingAccountService billingAccountService) {
+        this.billingAccountService = billingAccountService;
+    }
+
     @Override
     public void createBillingAccount(BillingRequest request,
                                      StreamObserver<BillingResponse> responseObserver) {
         log.info("Creating Billing request received: {}", request.toString());
 
-        BillingResponse response = BillingResponse.newBuilder()
-                .setAccountId("12345")
-                .setStatus("ACTIVE")
-                .build();
+        BillingResponse response;
+        try {
+            response = billingAccountService.createAccount(request);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void createBillingAccounts(BillingBatchRequest request,
+                                      StreamObserver<BillingBatchResponse> responseObserver) {
+        log.info("Creating {} billing accounts", request.getAccountsCount());
+
+        BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+        try {
+            for (BillingRequest account : request.getAccountsList()) {
+                response.addAccounts(billingAccountService.createAccount(account));
+            }
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
 }
@@ -0,0 +1,30 @@
+package com.pm.billingservicegrpc.service;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class BillingAccountService {
+    // Billing accounts by patient id. Creating an account for a patient that already has one returns the existing
+    // account, so patient-service can resend a batch after a lost response without opening a second account.
+    // Accounts are only kept in memory for now, so a restarted or second billing instance does not know the
+    // accounts created before or elsewhere.
+
+    private final Map<String, BillingResponse> accounts = new ConcurrentHashMap<>();
+
+    /// The patient's account, created on the first request for that patient id
+    public BillingResponse createAccount(BillingRequest request) {
+        if (request.getPatientId().isBlank()) {
+            throw new IllegalArgumentException("patientId is required");
+        }
+        return accounts.computeIfAbsent(request.getPatientId(), patientId -> BillingResponse.newBuilder()
+                .setAccountId(UUID.randomUUID().toString())
+                .setStatus("ACTIVE")
+                .build());
+    }
+}
@@ -0,0 +1,44 @@
+package com.pm.billingservicegrpc.service;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BillingAccountServiceTest {
+
+    private final BillingAccountService billingAccountService = new BillingAccountService();
+
+    @Test
+    void createAccountReturnsTheExistingAccountForAKnownPatient() {
+        BillingResponse first = billingAccountService.createAccount(request("p-1"));
+        BillingResponse retried = billingAccountService.createAccount(request("p-1"));
+
+        assertEquals(first.getAccountId(), retried.getAccountId());
+        assertEquals("ACTIVE", retried.getStatus());
+    }
+
+    @Test
+    void createAccountOpensOneAccountPerPatient() {
+        BillingResponse first = billingAccountService.createAccount(request("p-1"));
+        BillingResponse second = billingAccountService.createAccount(request("p-2"));
+
+        assertNotEquals(first.getAccountId(), second.getAccountId());
+    }
+
+    @Test
+    void createAccountRequiresAPatientId() {
+        assertThrows(IllegalArgumentException.class, () -> billingAccountService.createAccount(request("")));
+    }
+
+    private static BillingRequest request(String patientId) {
+        return BillingRequest.newBuilder()
+                .setPatientId(patientId)
+                .setName("Jane Doe")
+                .setEmail("jane@example.com")
+                .build();
+    }
+}
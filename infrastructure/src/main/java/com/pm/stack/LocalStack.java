@@ -107,7 +107,8 @@ public class LocalStack extends Stack {
                         .image(ContainerImage.fromRegistry("api-gateway"))
                         .environment(Map.of(
                                 "SPRING_PROFILES_ACTIVE", "prod",
-                                "AUTH_SERVICE_URL", "http://host.docker.internal:4005"
+                                "AUTH_SERVICE_URL", "http://host.docker.internal:4005",
+                                "JWT_SECRET", "p9J2R0aVxM7wLZ5Q9C4mXk8T0vFJwZ1bYcR2nH3E5sA="
                         ))
                         .portMappings(List.of(4004).stream()
                                 .map(port -> PortMapping.builder()
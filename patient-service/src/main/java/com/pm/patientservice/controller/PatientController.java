@@ -1,17 +1,33 @@
 package com.pm.patientservice.controller;
 
+import com.pm.patientservice.dto.PatientChangesResponseDTO;
+import com.pm.patientservice.dto.PatientImportResponseDTO;
+import com.pm.patientservice.dto.PatientPageResponseDTO;
 import com.pm.patientservice.dto.PatientRequestDTO;
 import com.pm.patientservice.dto.PatientResponseDTO;
 import com.pm.patientservice.dto.validators.CreatePatientValidationGroup;
+import com.pm.patientservice.service.IdempotencyStore;
+import com.pm.patientservice.service.PatientImportService;
 import com.pm.patientservice.service.PatientService;
+import com.pm.patientservice.stream.PatientChangeStream;
 import jakarta.validation.Valid;
 import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,18 +37,114 @@ import java.util.UUID;
 public class PatientController {
 
     private final PatientService patientService;
+    private final PatientImportService patientImportService;
+    private final IdempotencyStore idempotencyStore;
+    private final PatientChangeStream patientChangeStream;
 
+    @Value("${patient.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${patient.page.max-size:200}")
+    private int maxPageSize;
+
+    /// Keyset-paginated list of patients; follow "next" (or pass "nextCursor" as cursor) for the following page.
+    /// size is clamped to patient.page.max-size.
+    /// Optional ISO date filters: registeredFrom/registeredTo (inclusive) and bornBefore (exclusive).
     @GetMapping
-    public ResponseEntity<List<PatientResponseDTO>> findAll() {
-        List<PatientResponseDTO> patients = patientService.getPatients();
-        return ResponseEntity.ok().body(patients);
+    public ResponseEntity<PatientPageResponseDTO> findAll(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredTo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornBefore,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        int pageSize = pageSize(size);
+        PatientPageResponseDTO page = patientService.getPatients(registeredFrom, registeredTo, bornBefore, cursor, pageSize);
+        setNextLink(page, pageSize);
+        return ResponseEntity.ok().body(page);
+    }
+
+    /// Patients whose name or email matches q (case-insensitive), ranked exact, prefix, then substring matches.
+    /// Paginated like findAll.
+    @GetMapping("/search")
+    public ResponseEntity<PatientPageResponseDTO> searchPatients(@RequestParam String q,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer size) {
+        int pageSize = pageSize(size);
+        PatientPageResponseDTO page = patientService.searchPatients(q, cursor, pageSize);
+        setNextLink(page, pageSize);
+        return ResponseEntity.ok().body(page);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PatientResponseDTO> findById(@PathVariable UUID id) {
+        return ResponseEntity.ok().body(patientService.getPatient(id));
+    }
+
+    /// Incremental sync: what was created, updated (type UPSERT, with the patient) or deleted (type DELETE)
+    /// since the cursor. Start without since, then always pass the previous nextCursor; follow "next" while hasMore.
+    @GetMapping("/changes")
+    public ResponseEntity<PatientChangesResponseDTO> getChanges(@RequestParam(required = false) String since,
+                                                                @RequestParam(required = false) Integer size) {
+        int pageSize = pageSize(size);
+        PatientChangesResponseDTO page = patientService.getChanges(since, pageSize);
+        if (page.isHasMore()) {
+            page.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("since", page.getNextCursor())
+                    .replaceQueryParam("size", pageSize)
+                    .toUriString());
+        }
+        return ResponseEntity.ok().body(page);
+    }
+
+    /// The same changes as GET /patients/changes, pushed as server-sent "change" events instead of polled for.
+    /// Starts after since (a nextCursor of /patients/changes), or with the changes from now on without it. Each
+    /// event's id is a cursor; a reconnect with Last-Event-ID, which EventSource sends by itself, resumes after it.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                    @RequestParam(required = false) String since) {
+        return patientChangeStream.subscribe(lastEventId != null ? lastEventId : since);
     }
 
+    /// Every patient as newline-delimited JSON, streamed from a database cursor instead of built in memory
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPatients() {
+        StreamingResponseBody body = patientService::exportPatients;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                // Keeps caches such as the gateway's response cache from buffering the whole export
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    /// With an Idempotency-Key header, retries of the request return the first response (marked with
+    /// Idempotent-Replayed: true) instead of creating the patient again; use a new key, such as a UUID, per patient.
     @PostMapping
     public ResponseEntity<PatientResponseDTO> createPatient(@Validated({Default.class, CreatePatientValidationGroup.class})
-                                                                @RequestBody PatientRequestDTO patientRequestDTO) {
-        PatientResponseDTO newPatient = patientService.createPatient(patientRequestDTO);
-        return ResponseEntity.status(HttpStatus.CREATED).body(newPatient);
+                                                                @RequestBody PatientRequestDTO patientRequestDTO,
+                                                            @RequestHeader(name = "Idempotency-Key", required = false)
+                                                                String idempotencyKey) {
+        if (idempotencyKey == null) {
+            PatientResponseDTO newPatient = patientService.createPatient(patientRequestDTO);
+            return ResponseEntity.status(HttpStatus.CREATED).body(newPatient);
+        }
+        IdempotencyStore.Result result = idempotencyStore.createOnce(idempotencyKey, patientRequestDTO,
+                () -> patientService.createPatient(patientRequestDTO));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body(result.response());
+    }
+
+    /// Creates many patients in one request from a JSON array. Each row gets a result in the response;
+    /// invalid rows and duplicate emails are skipped, the rest are created.
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PatientImportResponseDTO> importPatients(@RequestBody List<PatientRequestDTO> patients) {
+        return ResponseEntity.ok().body(patientImportService.importPatients(patients));
+    }
+
+    /// Same as importPatients with one patient per line
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<PatientImportResponseDTO> importPatientsNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok().body(patientImportService.importPatients(body));
     }
 
     @PutMapping("/{id}")
@@ -47,4 +159,18 @@ public class PatientController {
         patientService.deletePatient(id);
         return ResponseEntity.noContent().build();
     }
+
+    private int pageSize(Integer size) {
+        return Math.max(1, Math.min(size != null ? size : defaultPageSize, maxPageSize));
+    }
+
+    private void setNextLink(PatientPageResponseDTO page, int pageSize) {
+        if (page.getNextCursor() != null) {
+            // Honours X-Forwarded-* (server.forward-headers-strategy), so the link points at the gateway
+            page.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .replaceQueryParam("size", pageSize)
+                    .toUriString());
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.pm.patientservice.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    // Sends connections for read-only transactions (@Transactional(readOnly = true)) to the replica and everything
+    // else to the primary. The decision is made when a connection is first used, so this must sit behind a
+    // LazyConnectionDataSourceProxy: the transaction manager asks for its connection before the read-only flag of
+    // the new transaction is visible.
+
+    enum Target { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.lagMonitor = lagMonitor;
+        this.primaryConnections = meterRegistry.counter("patient.datasource.connections", "target", "primary");
+        this.replicaConnections = meterRegistry.counter("patient.datasource.connections", "target", "replica");
+    }
+
+    /// Sends this thread's read-only transactions to the primary as well, until clearPrimaryReads
+    public static void usePrimaryForReads() {
+        PRIMARY_READS.set(Boolean.TRUE);
+    }
+
+    public static void clearPrimaryReads() {
+        PRIMARY_READS.remove();
+    }
+
+    /// Runs query with this thread's read-only transactions on the primary, then restores the previous routing.
+    /// For reads whose result outlives the request, such as cache fills, where a lagging replica row would stick.
+    public static <T> T readFromPrimary(Supplier<T> query) {
+        Boolean previous = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_READS.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && PRIMARY_READS.get() == null
+                && !lagMonitor.isBehind()) {
+            replicaConnections.increment();
+            return Target.REPLICA;
+        }
+        primaryConnections.increment();
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,68 @@
+package com.pm.patientservice.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    // Read-your-writes per client: any write request sets a cookie that keeps the client's reads on the primary for
+    // patient.datasource.read-your-writes, so a client that has just created or changed a patient sees it even while
+    // the replica has not replayed it yet. Other clients keep reading from the replica.
+
+    static final String COOKIE = "patient-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!readsFromPrimary(request, now)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadWriteRoutingDataSource.usePrimaryForReads();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.clearPrimaryReads();
+        }
+    }
+
+    private static boolean readsFromPrimary(HttpServletRequest request, long now) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > now;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.pm.patientservice.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Slf4j
+public class ReplicaLagMonitor {
+    // Polls how far the replica's replay is behind the primary and takes it out of rotation while that exceeds
+    // patient.datasource.replica.max-lag, or while it cannot be reached at all. Only Postgres reports its lag;
+    // for other databases (H2 when trying this out locally) the replica is always considered current.
+
+    /// Zero when everything received has been replayed, otherwise the age of the last replayed transaction
+    static final String POSTGRES_LAG_QUERY = """
+            select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                        else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end
+            """;
+
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+    private final boolean supported;
+    private volatile double lagSeconds;
+    private volatile boolean behind;
+
+    public ReplicaLagMonitor(DataSource replica, String replicaUrl, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+        this.supported = replicaUrl.startsWith("jdbc:postgresql:");
+        Gauge.builder("patient.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /// True while reads should stay on the primary
+    public boolean isBehind() {
+        return behind;
+    }
+
+    @Scheduled(fixedDelayString = "${patient.datasource.replica.lag-check-interval:5s}")
+    public void check() {
+        if (!supported) {
+            return;
+        }
+        boolean wasBehind = behind;
+        try {
+            Double lag = replica.queryForObject(POSTGRES_LAG_QUERY, Double.class);
+            lagSeconds = lag == null ? 0 : lag;
+            behind = lagSeconds > maxLag.toMillis() / 1000.0;
+        } catch (RuntimeException e) {
+            lagSeconds = Double.NaN;
+            behind = true;
+            if (!wasBehind) {
+                log.warn("Replica lag check failed, reading from the primary: {}", e.getMessage());
+            }
+            return;
+        }
+        if (behind != wasBehind) {
+            log.warn(behind ? "Replica is {}s behind, reading from the primary" : "Replica caught up ({}s), reading from it again",
+                    lagSeconds);
+        }
+    }
+}
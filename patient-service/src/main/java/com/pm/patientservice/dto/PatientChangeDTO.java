@@ -0,0 +1,47 @@
+package com.pm.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/// One entry of GET /patients/changes. Built by the change queries in PatientRepository and
+/// PatientTombstoneRepository, one constructor per type.
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientChangeDTO {
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    /// UPSERT: create or replace the patient, DELETE: drop it
+    private String type;
+    private UUID id;
+    /// Current state of the patient, only for UPSERT
+    private PatientResponseDTO patient;
+
+    @JsonIgnore
+    private long changeSeq;
+    @JsonIgnore
+    private Instant changedAt;
+
+    public PatientChangeDTO(long changeSeq, Instant changedAt, UUID id, String name, String email, String address,
+                            LocalDate birthDate) {
+        this.type = UPSERT;
+        this.id = id;
+        this.patient = new PatientResponseDTO(id, name, email, address, birthDate);
+        this.changeSeq = changeSeq;
+        this.changedAt = changedAt;
+    }
+
+    public PatientChangeDTO(long changeSeq, UUID id, Instant changedAt) {
+        this.type = DELETE;
+        this.id = id;
+        this.changeSeq = changeSeq;
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,17 @@
+package com.pm.patientservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PatientChangesResponseDTO {
+    /// Oldest first; apply in order
+    private List<PatientChangeDTO> changes;
+    /// Pass as since on the next sync, also when changes is empty. null only if nothing has ever changed.
+    private String nextCursor;
+    /// true when more changes are available right away, otherwise poll again later
+    private boolean hasMore;
+    /// Ready-made URL of the following page, only when hasMore
+    private String next;
+}
@@ -0,0 +1,13 @@
+package com.pm.patientservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PatientImportResponseDTO {
+    private int created;
+    private int rejected;
+    /// One entry per request row, in request order
+    private List<PatientImportResultDTO> results;
+}
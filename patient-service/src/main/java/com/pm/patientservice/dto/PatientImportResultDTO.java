@@ -0,0 +1,25 @@
+package com.pm.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientImportResultDTO {
+    public static final String CREATED = "CREATED";
+    public static final String INVALID = "INVALID";
+    public static final String DUPLICATE = "DUPLICATE";
+    /// Valid, but not saved because the database of its shard failed; the row can be sent again
+    public static final String FAILED = "FAILED";
+
+    /// Zero-based position of the row in the request
+    private int row;
+    /// CREATED, INVALID, DUPLICATE or FAILED
+    private String status;
+    /// Id of the new patient, only for CREATED rows
+    private String id;
+    /// Field name to message, only for INVALID and FAILED rows
+    private Map<String, String> errors;
+}
@@ -0,0 +1,14 @@
+package com.pm.patientservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PatientPageResponseDTO {
+    private List<PatientResponseDTO> patients;
+    /// Opaque token for the following page, null on the last page
+    private String nextCursor;
+    /// Ready-made URL of the following page, null on the last page
+    private String next;
+}
@@ -19,9 +19,11 @@ public class PatientRequestDTO {
 
     @NotBlank(message = "Email is mandatory")
     @Email(message = "Email should be valid")
+    @Size(max = 255, message = "Email must not exceed 255 characters")
     private String email;
 
     @NotBlank(message = "address is mandatory")
+    @Size(max = 255, message = "Address must not exceed 255 characters")
     private String address;
 
     @NotBlank(message = "Date of Birth is mandatory")
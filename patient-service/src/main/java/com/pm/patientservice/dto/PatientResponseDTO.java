@@ -1,18 +1,26 @@
 package com.pm.patientservice.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDate;
+import java.util.UUID;
 
+/// Built straight from the selected columns by the read queries in PatientRepository (see PATIENT_DTO), so the
+/// constructor's parameter order is part of those queries. Jackson writes id and birthDate as the same strings
+/// as before, without an intermediate String per row.
 @Data
 @Getter
 @Setter
+@NoArgsConstructor
+@AllArgsConstructor
 public class PatientResponseDTO {
-    private String id;
+    private UUID id;
     private String name;
     private String email;
     private String address;
-    private String birthDate;
+    private LocalDate birthDate;
 }
@@ -1,6 +1,8 @@
 package com.pm.patientservice.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -39,4 +41,65 @@ public class GlobalExceptionHandler {
         error.put("message", "Patient Not Found");
         return ResponseEntity.badRequest().body(error);
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String,String>> handleInvalidCursorException(InvalidCursorException ex) {
+        log.warn("Invalid pagination cursor");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Invalid Cursor");
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(InvalidSearchException.class)
+    public ResponseEntity<Map<String,String>> handleInvalidSearchException(InvalidSearchException ex) {
+        log.warn("Invalid search request");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<Map<String,String>> handleInvalidImportException(InvalidImportException ex) {
+        log.warn("Invalid patient import");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<Map<String,String>> handleInvalidIdempotencyKeyException(InvalidIdempotencyKeyException ex) {
+        log.warn("Invalid idempotency key");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<Map<String,String>> handleIdempotencyKeyMismatchException(IdempotencyKeyMismatchException ex) {
+        log.warn("Idempotency key reused for a different request");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.unprocessableEntity().body(error);
+    }
+
+    @ExceptionHandler(IdempotentRequestInProgressException.class)
+    public ResponseEntity<Map<String,String>> handleIdempotentRequestInProgressException(
+            IdempotentRequestInProgressException ex) {
+        log.warn("Retry of a request that is still in progress");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    @ExceptionHandler(StreamCapacityExceededException.class)
+    public ResponseEntity<Map<String,String>> handleStreamCapacityExceededException(StreamCapacityExceededException ex) {
+        log.warn("Patient stream rejected, too many open streams");
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(error);
+    }
 }
@@ -1,29 +1,39 @@
 package com.pm.patientservice.grpc;
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
+import com.pm.patientservice.model.BillingOutbox;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
 public class BillingServiceGrpcClient {
     private final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
+    private final long deadlineMillis;
 
 
     public BillingServiceGrpcClient(
             @Value("${billing.service.address:localhost}") String host,
-            @Value("${billing.service.port:9001}") int port
+            @Value("${billing.service.port:9001}") int port,
+            @Value("${billing.service.deadline:5s}") Duration deadline
     ) {
 
         log.info("connecting to Billing Service GRPC service at: host={}, port={}", host, port);
 
         ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port).usePlaintext().build();
         blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+        deadlineMillis = deadline.toMillis();
 
     }
 
@@ -35,8 +45,30 @@ public class BillingServiceGrpcClient {
                 .setEmail(email)
                 .build();
 
-        BillingResponse response = blockingStub.createBillingAccount(request);
+        BillingResponse response = stub().createBillingAccount(request);
         log.info("received response from Billing Service GRPC: {}", response);
         return response;
     }
+
+    /// Creates accounts for all entries in a single call, responses are in the same order as entries
+    public List<BillingResponse> createBillingAccounts(List<BillingOutbox> entries){
+
+        BillingBatchRequest.Builder request = BillingBatchRequest.newBuilder();
+        for (BillingOutbox entry : entries) {
+            request.addAccounts(BillingRequest.newBuilder()
+                    .setPatientId(entry.getPatientId().toString())
+                    .setName(entry.getName())
+                    .setEmail(entry.getEmail())
+                    .build());
+        }
+
+        BillingBatchResponse response = stub().createBillingAccounts(request.build());
+        log.info("received {} billing accounts from Billing Service GRPC", response.getAccountsCount());
+        return response.getAccountsList();
+    }
+
+    /// Deadlines are absolute, so every call needs a stub of its own
+    private BillingServiceGrpc.BillingServiceBlockingStub stub() {
+        return blockingStub.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+    }
 }
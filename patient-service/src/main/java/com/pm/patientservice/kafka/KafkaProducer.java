@@ -7,9 +7,15 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import patient.event.PatientEvent;
 
+import java.util.List;
+
 @Slf4j
 @Service
 public class KafkaProducer {
+    public static final String TOPIC = "patient";
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+    public static final String PATIENT_UPDATED = "PATIENT_UPDATED";
+    public static final String PATIENT_DELETED = "PATIENT_DELETED";
 
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
 
@@ -18,19 +24,41 @@ public class KafkaProducer {
     }
 
     public void sendEvent(Patient patient) {
-        PatientEvent event = PatientEvent.newBuilder()
-                .setPatientId(patient.getId().toString())
-                .setName(patient.getName())
-                .setEmail(patient.getEmail())
-                .setEventType("PATIENT_CREATED")
-                .build();
+        sendEvent(patient, PATIENT_CREATED);
+    }
+
+    /// Events are keyed by patient id, so the events of one patient stay in order
+    public void sendEvent(Patient patient, String eventType) {
+        PatientEvent event = event(patient, eventType);
         try {
-            kafkaTemplate.send("patient", event.toByteArray());
+            kafkaTemplate.send(TOPIC, event.getPatientId(), event.toByteArray());
             log.info("Patient event sent to Kafka: {}", event);
         }catch (Exception e){
             log.error("Error while sending patient event to Kafka: {}", event);
         }
     }
 
+    /// Queues one event per patient without waiting in between, so the producer packs them into a few
+    /// record batches, then flushes once
+    public void sendEvents(List<Patient> patients) {
+        try {
+            for (Patient patient : patients) {
+                PatientEvent event = event(patient, PATIENT_CREATED);
+                kafkaTemplate.send(TOPIC, event.getPatientId(), event.toByteArray());
+            }
+            kafkaTemplate.flush();
+            log.info("{} patient events sent to Kafka", patients.size());
+        }catch (Exception e){
+            log.error("Error while sending {} patient events to Kafka", patients.size(), e);
+        }
+    }
 
+    private PatientEvent event(Patient patient, String eventType) {
+        return PatientEvent.newBuilder()
+                .setPatientId(patient.getId().toString())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .setEventType(eventType)
+                .build();
+    }
 }
@@ -0,0 +1,43 @@
+package com.pm.patientservice.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.pm.patientservice.service.PatientCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import patient.event.PatientEvent;
+
+import java.util.UUID;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "patient.cache.kafka-invalidation", havingValue = "true")
+public class PatientCacheInvalidationListener {
+    // Evicts patients changed on other instances from the local PatientCache. Every instance joins a consumer
+    // group of its own so that each one sees every event, and only events from startup on are read.
+
+    private final PatientCache patientCache;
+
+    public PatientCacheInvalidationListener(PatientCache patientCache) {
+        this.patientCache = patientCache;
+    }
+
+    @KafkaListener(topics = KafkaProducer.TOPIC,
+            groupId = "patient-cache-#{T(java.util.UUID).randomUUID()}",
+            properties = {
+                    "auto.offset.reset=latest",
+                    "key.deserializer=org.apache.kafka.common.serialization.StringDeserializer",
+                    "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer"
+            })
+    public void consumeEvent(byte[] event) {
+        try {
+            PatientEvent patientEvent = PatientEvent.parseFrom(event);
+            if (!KafkaProducer.PATIENT_CREATED.equals(patientEvent.getEventType())) {
+                patientCache.evict(UUID.fromString(patientEvent.getPatientId()));
+            }
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            log.error("Failed to parse PatientEvent from Kafka message", e);
+        }
+    }
+}
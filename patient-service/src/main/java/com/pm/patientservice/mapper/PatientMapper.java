@@ -5,22 +5,19 @@ import com.pm.patientservice.dto.PatientResponseDTO;
 import com.pm.patientservice.model.Patient;
 
 import java.time.LocalDate;
+import java.util.UUID;
 
 public class PatientMapper {
 
     public static PatientResponseDTO toDto(Patient patient) {
-        PatientResponseDTO patientDto = new PatientResponseDTO();
-        patientDto.setId(patient.getId().toString());
-        patientDto.setName(patient.getName());
-        patientDto.setEmail(patient.getEmail());
-        patientDto.setAddress(patient.getAddress());
-        patientDto.setBirthDate(patient.getBirthDate().toString());
-        return patientDto;
+        return new PatientResponseDTO(patient.getId(), patient.getName(), patient.getEmail(),
+                patient.getAddress(), patient.getBirthDate());
     }
 
 
     public static Patient toEntity(PatientRequestDTO patientRequestDTO) {
         Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
         patient.setName(patientRequestDTO.getName());
         patient.setEmail(patientRequestDTO.getEmail());
         patient.setAddress(patientRequestDTO.getAddress());
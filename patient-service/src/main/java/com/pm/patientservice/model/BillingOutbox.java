@@ -0,0 +1,50 @@
+package com.pm.patientservice.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "billing_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+public class BillingOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    /// Also the key billing dedupes retried accounts by, see BillingOutboxRelay
+    @Column(nullable = false, unique = true)
+    private UUID patientId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    public static BillingOutbox forPatient(Patient patient) {
+        Instant now = Instant.now();
+        BillingOutbox entry = new BillingOutbox();
+        entry.setPatientId(patient.getId());
+        entry.setName(patient.getName());
+        entry.setEmail(patient.getEmail());
+        entry.setCreatedAt(now);
+        entry.setNextAttemptAt(now);
+        return entry;
+    }
+}
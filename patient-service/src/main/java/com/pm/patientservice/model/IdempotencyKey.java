@@ -0,0 +1,59 @@
+package com.pm.patientservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/// Idempotency-Key of a POST /patients request, see IdempotencyStore.
+/// response is null while the request is still running and holds the JSON it returned once it has completed.
+@Entity
+@Table(name = "patient_idempotency_key")
+@Getter
+@NoArgsConstructor
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    @Column(nullable = false)
+    private String requestHash;
+
+    private String response;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Always inserted, never merged: claiming a key that is in use must fail on the primary key
+    @Transient
+    private boolean loaded;
+
+    public IdempotencyKey(String key, String requestHash, Instant createdAt) {
+        this.key = key;
+        this.requestHash = requestHash;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !loaded;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        loaded = true;
+    }
+}
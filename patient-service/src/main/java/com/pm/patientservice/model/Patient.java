@@ -5,7 +5,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.springframework.data.domain.Persistable;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.UUID;
 
@@ -14,10 +16,10 @@ import java.util.UUID;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-public class Patient {
+public class Patient implements Persistable<UUID> {
 
+    /// Assigned by PatientMapper before saving rather than generated on insert, the shard is chosen from it
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
     @NotNull
@@ -38,4 +40,26 @@ public class Patient {
     @NotNull
     @Column(name = "REGISTERED_DATE")
     private LocalDate registrationDate;
+
+    /// Position of the last write in GET /patients/changes, set by PatientChangeTracker
+    private long changeSeq;
+
+    private Instant updatedAt;
+
+    // The id is always set, so Spring Data cannot tell a new patient by a null id (it would merge, with a select)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
 }
@@ -0,0 +1,50 @@
+package com.pm.patientservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.util.UUID;
+
+/// Entry of the email directory on shard 0: which patient owns an email, whichever shard the patient lives on.
+/// Its primary key is what keeps emails unique across shards.
+@Entity
+@Table(name = "patient_email")
+@Getter
+@NoArgsConstructor
+public class PatientEmail implements Persistable<String> {
+
+    @Id
+    private String email;
+
+    private UUID patientId;
+
+    // Always inserted, never merged: saving a taken email must fail on the key instead of taking it over
+    @Transient
+    private boolean loaded;
+
+    public PatientEmail(String email, UUID patientId) {
+        this.email = email;
+        this.patientId = patientId;
+    }
+
+    @Override
+    public String getId() {
+        return email;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !loaded;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        loaded = true;
+    }
+}
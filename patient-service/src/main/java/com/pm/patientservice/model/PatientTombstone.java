@@ -0,0 +1,27 @@
+package com.pm.patientservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/// Left behind by a deleted patient, so GET /patients/changes can tell clients to drop it
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientTombstone {
+
+    @Id
+    private UUID patientId;
+
+    private long changeSeq;
+
+    private Instant deletedAt;
+}
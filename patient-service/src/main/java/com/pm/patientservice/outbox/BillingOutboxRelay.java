@@ -0,0 +1,127 @@
+package com.pm.patientservice.outbox;
+
+import com.pm.patientservice.grpc.BillingServiceGrpcClient;
+import com.pm.patientservice.model.BillingOutbox;
+import com.pm.patientservice.repository.BillingOutboxRepository;
+import com.pm.patientservice.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class BillingOutboxRelay {
+    // Creates billing accounts for patients recorded in billing_outbox, off the request path of POST /patients.
+    // Each poll claims due rows with SKIP LOCKED, sends them to billing in one call and deletes them once billing
+    // confirms. A failed batch stays in the outbox and is retried with exponential backoff, so a row can be sent
+    // more than once. Billing returns the existing account for a patient id it already knows, but only keeps them
+    // in memory, so a retry that reaches a restarted billing instance still opens a duplicate account there.
+
+    private final BillingOutboxRepository outboxRepository;
+    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter provisioned;
+    private final Counter failedBatches;
+    private volatile long pending;
+    private volatile long lagMillis;
+
+    public BillingOutboxRelay(BillingOutboxRepository outboxRepository,
+                              BillingServiceGrpcClient billingServiceGrpcClient,
+                              TransactionTemplate transactionTemplate,
+                              ShardRouter shardRouter,
+                              @Value("${billing.outbox.batch-size:200}") int batchSize,
+                              @Value("${billing.outbox.initial-backoff:1s}") Duration initialBackoff,
+                              @Value("${billing.outbox.max-backoff:5m}") Duration maxBackoff,
+                              MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+
+        this.provisioned = meterRegistry.counter("billing.outbox.provisioned");
+        this.failedBatches = meterRegistry.counter("billing.outbox.failed.batches");
+        Gauge.builder("billing.outbox.pending", this, relay -> relay.pending)
+                .description("Billing accounts waiting to be created")
+                .register(meterRegistry);
+        TimeGauge.builder("billing.outbox.lag", this, TimeUnit.MILLISECONDS, relay -> relay.lagMillis)
+                .description("Age of the oldest billing account waiting to be created")
+                .register(meterRegistry);
+    }
+
+    /// Drains every due entry, one batch per transaction and shard by shard, then refreshes the lag gauges
+    @Scheduled(fixedDelayString = "${billing.outbox.poll-interval:500ms}")
+    public void relay() {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> {
+                int relayed;
+                do {
+                    relayed = transactionTemplate.execute(status -> relayBatch());
+                } while (relayed == batchSize);
+                return null;
+            });
+        }
+        updateLag();
+    }
+
+    /// Returns how many accounts were created, 0 when nothing was due or billing failed
+    private int relayBatch() {
+        List<BillingOutbox> batch = outboxRepository.findDue(Instant.now(), Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            billingServiceGrpcClient.createBillingAccounts(batch);
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            Instant now = Instant.now();
+            for (BillingOutbox entry : batch) {
+                entry.setAttempts(entry.getAttempts() + 1);
+                entry.setNextAttemptAt(now.plus(backoff(entry.getAttempts())));
+            }
+            log.warn("Error while creating {} billing accounts, retrying later: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+        outboxRepository.deleteAllInBatch(batch);
+        provisioned.increment(batch.size());
+        return batch.size();
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void updateLag() {
+        long count = 0;
+        Instant oldest = null;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            count += shardRouter.onShard(shard, outboxRepository::count);
+            Instant shardOldest = shardRouter.onShard(shard, outboxRepository::findOldestCreatedAt);
+            if (shardOldest != null && (oldest == null || shardOldest.isBefore(oldest))) {
+                oldest = shardOldest;
+            }
+        }
+        pending = count;
+        lagMillis = oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toMillis());
+    }
+}
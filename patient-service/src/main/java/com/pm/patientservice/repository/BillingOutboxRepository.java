@@ -0,0 +1,38 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.model.BillingOutbox;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface BillingOutboxRepository extends JpaRepository<BillingOutbox, UUID> {
+    /// Lock timeout that Hibernate renders as SKIP LOCKED
+    String SKIP_LOCKED = "-2";
+
+    /// Entries due for an attempt, oldest first, locked for the rest of the transaction.
+    /// Rows another relay has locked are skipped instead of waited for, so every instance can relay at once.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = SKIP_LOCKED))
+    @Query("select o from BillingOutbox o where o.nextAttemptAt <= :now order by o.createdAt")
+    List<BillingOutbox> findDue(@Param("now") Instant now, Limit limit);
+
+    /// Not read-only like the inherited count, so it is answered by the primary and not a lagging read replica
+    @Override
+    @Transactional
+    long count();
+
+    /// null when the outbox is empty
+    @Query("select min(o.createdAt) from BillingOutbox o")
+    Instant findOldestCreatedAt();
+}
@@ -0,0 +1,36 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Modifying
+    @Query("update IdempotencyKey k set k.response = :response where k.key = :key")
+    int complete(@Param("key") String key, @Param("response") String response);
+
+    /// Restarts a claim of the same request that never completed, e.g. because its instance died; 0 if it has
+    /// completed since, was made for a different request or another retry has taken it over first
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.createdAt = :now
+             where k.key = :key and k.requestHash = :requestHash and k.response is null
+               and k.createdAt < :abandonedBefore
+            """)
+    int takeOver(@Param("key") String key, @Param("requestHash") String requestHash,
+                 @Param("now") Instant now, @Param("abandonedBefore") Instant abandonedBefore);
+
+    /// Frees a claim whose request failed, so the client can retry with the same key
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.response is null")
+    int release(@Param("key") String key);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,65 @@
+package com.pm.patientservice.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/// Pageable starting at an arbitrary row offset rather than a page number, for cursors that carry an offset.
+/// Unsorted: the queries it is used with define their own ORDER BY.
+public class OffsetPageRequest implements Pageable {
+
+    private final long offset;
+    private final int size;
+
+    public OffsetPageRequest(long offset, int size) {
+        if (offset < 0 || size < 1) {
+            throw new IllegalArgumentException("offset must be >= 0 and size >= 1");
+        }
+        this.offset = offset;
+        this.size = size;
+    }
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / size);
+    }
+
+    @Override
+    public int getPageSize() {
+        return size;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return Sort.unsorted();
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetPageRequest(offset + size, size);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(0, offset - size), size) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetPageRequest(0, size);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new OffsetPageRequest((long) pageNumber * size, size);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.model.PatientEmail;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/// The email directory, only used when patients are sharded (see EmailDirectory)
+public interface PatientEmailRepository extends JpaRepository<PatientEmail, String> {
+
+    @Query("select e.email from PatientEmail e where e.email in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /// Only the patient's own entry, in case the email has already been claimed again by someone else
+    @Modifying
+    @Query("delete from PatientEmail e where e.email = :email and e.patientId = :patientId")
+    int deleteByEmailAndPatientId(@Param("email") String email, @Param("patientId") UUID patientId);
+
+    /// Adds the patients of this database that have no entry yet, for when an existing database becomes shard 0
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into patient_email (email, patient_id)
+            select p.email, p.id from patient p
+             where not exists (select 1 from patient_email e where e.email = p.email)
+            """)
+    int addMissingFromPatients();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = PatientRepository.EXPORT_FETCH_SIZE))
+    @Query("select e.email from PatientEmail e")
+    Stream<String> streamEmails();
+}
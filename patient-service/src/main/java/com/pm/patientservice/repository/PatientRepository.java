@@ -1,10 +1,100 @@
 package com.pm.patientservice.repository;
 
+import com.pm.patientservice.dto.PatientChangeDTO;
 import com.pm.patientservice.dto.PatientResponseDTO;
 import com.pm.patientservice.model.Patient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+/// Read endpoints select PATIENT_DTO projections rather than entities: only the returned columns are read and
+/// nothing enters the persistence context. Filtered lists (date filters) go through PatientRepositoryCustom.
+public interface PatientRepository extends JpaRepository<Patient, UUID>, PatientRepositoryCustom {
+    String EXPORT_FETCH_SIZE = "500";
+
+    String PATIENT_DTO = """
+            select new com.pm.patientservice.dto.PatientResponseDTO(p.id, p.name, p.email, p.address, p.birthDate)
+              from Patient p
+            """;
 
-public interface PatientRepository extends JpaRepository<Patient, UUID> {
     boolean existsByEmail(String email);
+
+    /// The subset of emails that already belong to a patient, in one query
+    @Query("select p.email from Patient p where p.email in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /// Ids of up to limit patients, in no particular order
+    @Query("select p.id from Patient p")
+    List<UUID> findIds(Limit limit);
+
+    @Query(PATIENT_DTO + " where p.id = :id")
+    Optional<PatientResponseDTO> findDtoById(@Param("id") UUID id);
+
+    /// First page of the keyset pagination over the primary key
+    @Query(PATIENT_DTO + " order by p.id")
+    List<PatientResponseDTO> findFirstPage(Limit limit);
+
+    /// Page after the given id, served straight from the primary key index however deep the page is
+    @Query(PATIENT_DTO + " where p.id > :id order by p.id")
+    List<PatientResponseDTO> findPageAfter(@Param("id") UUID id, Limit limit);
+
+    /// Patients written after (seq, id) in (changeSeq, id) order, served by the (change_seq, id) index
+    @Query("""
+            select new com.pm.patientservice.dto.PatientChangeDTO(p.changeSeq, p.updatedAt, p.id, p.name, p.email,
+                                                                  p.address, p.birthDate)
+              from Patient p
+             where p.changeSeq >= :seq and (p.changeSeq > :seq or p.id > :id)
+             order by p.changeSeq, p.id
+            """)
+    List<PatientChangeDTO> findChangesAfter(@Param("seq") long seq, @Param("id") UUID id, Limit limit);
+
+    /// Highest change number of patients written up to the given time, null when there is none
+    @Query("select max(p.changeSeq) from Patient p where p.updatedAt <= :before")
+    Long findLastChangeSeqBefore(@Param("before") Instant before);
+
+    /// Search ranking: exact name/email first, then prefix matches, then everything else; ties by name
+    String SEARCH_ORDER = """
+             order by case when lower(p.name) = :q or lower(p.email) = :q then 0
+                           when lower(p.name) like :prefix escape '\\' or lower(p.email) like :prefix escape '\\' then 1
+                           else 2 end,
+                      p.name, p.id
+            """;
+
+    /// Name or email starts with the (lower-cased, LIKE-escaped) term, served by the prefix indexes
+    @Query(PATIENT_DTO + """
+             where lower(p.name) like :prefix escape '\\' or lower(p.email) like :prefix escape '\\'
+            """ + SEARCH_ORDER)
+    Slice<PatientResponseDTO> searchByPrefix(@Param("q") String q, @Param("prefix") String prefix, Pageable pageable);
+
+    /// Name or email contains the term anywhere, served by the trigram indexes
+    @Query(PATIENT_DTO + """
+             where lower(p.name) like :contains escape '\\' or lower(p.email) like :contains escape '\\'
+            """ + SEARCH_ORDER)
+    Slice<PatientResponseDTO> searchBySubstring(@Param("q") String q, @Param("prefix") String prefix,
+                                                @Param("contains") String contains, Pageable pageable);
+
+    /// Every patient, read through a database cursor EXPORT_FETCH_SIZE rows at a time.
+    /// Must be consumed inside a transaction, Postgres only honours the fetch size with auto-commit off.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(PATIENT_DTO + " order by p.id")
+    Stream<PatientResponseDTO> streamAll();
+
+    /// Every patient email, for warming PatientEmailFilter. Same cursor and transaction rules as streamAll.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("select p.email from Patient p")
+    Stream<String> streamEmails();
 }
@@ -0,0 +1,18 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.dto.PatientResponseDTO;
+import com.pm.patientservice.model.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface PatientRepositoryCustom {
+
+    /// Patients matching spec as DTOs with their keyAttribute value, ordered by (keyAttribute, id)
+    List<KeyedPatient> findFiltered(Specification<Patient> spec, String keyAttribute, int limit);
+
+    /// key is the value of the date column the list is ordered by, which is not always part of the DTO
+    record KeyedPatient(LocalDate key, PatientResponseDTO patient) {
+    }
+}
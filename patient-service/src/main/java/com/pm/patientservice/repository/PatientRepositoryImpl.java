@@ -0,0 +1,46 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.dto.PatientResponseDTO;
+import com.pm.patientservice.model.Patient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class PatientRepositoryImpl implements PatientRepositoryCustom {
+    // Criteria counterpart of PatientRepository.PATIENT_DTO for the filtered list, whose where clause is only
+    // known at runtime. JpaSpecificationExecutor can only return entities, which is what this avoids.
+
+    private final EntityManager entityManager;
+
+    public PatientRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<KeyedPatient> findFiltered(Specification<Patient> spec, String keyAttribute, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Patient> patient = query.from(Patient.class);
+        query.multiselect(
+                cb.construct(PatientResponseDTO.class,
+                        patient.get("id"),
+                        patient.get("name"),
+                        patient.get("email"),
+                        patient.get("address"),
+                        patient.get("birthDate")),
+                patient.get(keyAttribute));
+        query.where(spec.toPredicate(patient, query, cb));
+        query.orderBy(cb.asc(patient.get(keyAttribute)), cb.asc(patient.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultStream()
+                .map(row -> new KeyedPatient(row.get(1, LocalDate.class), row.get(0, PatientResponseDTO.class)))
+                .toList();
+    }
+}
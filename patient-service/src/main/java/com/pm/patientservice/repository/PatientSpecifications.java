@@ -0,0 +1,36 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.model.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+public class PatientSpecifications {
+    // Building blocks for the filtered patient list. Each one is a plain comparison on an indexed column,
+    // so only the filters a caller actually sends end up in the query and the planner can range-scan.
+
+    public static final String REGISTRATION_DATE = "registrationDate";
+    public static final String BIRTH_DATE = "birthDate";
+
+    public static Specification<Patient> registeredOnOrAfter(LocalDate date) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(REGISTRATION_DATE), date);
+    }
+
+    public static Specification<Patient> registeredOnOrBefore(LocalDate date) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get(REGISTRATION_DATE), date);
+    }
+
+    public static Specification<Patient> bornBefore(LocalDate date) {
+        return (root, query, cb) -> cb.lessThan(root.get(BIRTH_DATE), date);
+    }
+
+    /// Rows after (date, id) in (dateAttribute, id) order. The redundant "date >= ?" gives the planner
+    /// a range bound on the leading index column, which the OR alone does not.
+    public static Specification<Patient> after(String dateAttribute, LocalDate date, UUID id) {
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.get(dateAttribute), date),
+                cb.or(cb.greaterThan(root.get(dateAttribute), date),
+                        cb.greaterThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,28 @@
+package com.pm.patientservice.repository;
+
+import com.pm.patientservice.dto.PatientChangeDTO;
+import com.pm.patientservice.model.PatientTombstone;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface PatientTombstoneRepository extends JpaRepository<PatientTombstone, UUID> {
+
+    /// Deletions after (seq, id) in (changeSeq, patientId) order
+    @Query("""
+            select new com.pm.patientservice.dto.PatientChangeDTO(t.changeSeq, t.patientId, t.deletedAt)
+              from PatientTombstone t
+             where t.changeSeq >= :seq and (t.changeSeq > :seq or t.patientId > :id)
+             order by t.changeSeq, t.patientId
+            """)
+    List<PatientChangeDTO> findChangesAfter(@Param("seq") long seq, @Param("id") UUID id, Limit limit);
+
+    /// Highest change number of deletions up to the given time, null when there is none
+    @Query("select max(t.changeSeq) from PatientTombstone t where t.deletedAt <= :before")
+    Long findLastChangeSeqBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,234 @@
+package com.pm.patientservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pm.patientservice.dto.PatientRequestDTO;
+import com.pm.patientservice.dto.PatientResponseDTO;
+import com.pm.patientservice.exception.IdempotencyKeyMismatchException;
+import com.pm.patientservice.exception.IdempotentRequestInProgressException;
+import com.pm.patientservice.exception.InvalidIdempotencyKeyException;
+import com.pm.patientservice.model.IdempotencyKey;
+import com.pm.patientservice.repository.IdempotencyKeyRepository;
+import com.pm.patientservice.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component
+public class IdempotencyStore {
+    // Makes POST /patients with an Idempotency-Key run at most once per key. The key is claimed in
+    // patient_idempotency_key (shard 0 when sharded) before the patient is created and completed with the response
+    // afterwards, so a retry on any instance gets the original response instead of a second insert, outbox row and
+    // Kafka event. Completed responses are also kept in a bounded LRU map, which answers a retry on the same
+    // instance without a query. A retry that arrives while the first request is still running is told to retry
+    // later; a claim that never completed (its instance died) can be taken over by the same request after
+    // patient.idempotency.abandoned-after.
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final ShardRouter shardRouter;
+    private final IdempotencyKeyRepository keyRepository;
+    private final ObjectWriter requestWriter;
+    private final ObjectWriter responseWriter;
+    private final ObjectReader responseReader;
+    private final Duration ttl;
+    private final Duration abandonedAfter;
+    private final Map<String, CachedResponse> cache;
+
+    private final Counter created;
+    private final Counter memoryHits;
+    private final Counter storedHits;
+    private final Counter inProgress;
+    private final Counter mismatches;
+
+    public IdempotencyStore(ShardRouter shardRouter,
+                            IdempotencyKeyRepository keyRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${patient.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${patient.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${patient.idempotency.abandoned-after:5m}") Duration abandonedAfter,
+                            MeterRegistry meterRegistry) {
+        this.shardRouter = shardRouter;
+        this.keyRepository = keyRepository;
+        this.requestWriter = objectMapper.writerFor(PatientRequestDTO.class);
+        this.responseWriter = objectMapper.writerFor(PatientResponseDTO.class);
+        this.responseReader = objectMapper.readerFor(PatientResponseDTO.class);
+        this.ttl = ttl;
+        this.abandonedAfter = abandonedAfter;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.created = meterRegistry.counter("patient.idempotency", "result", "new");
+        this.memoryHits = meterRegistry.counter("patient.idempotency", "result", "memory_hit");
+        this.storedHits = meterRegistry.counter("patient.idempotency", "result", "stored_hit");
+        this.inProgress = meterRegistry.counter("patient.idempotency", "result", "in_progress");
+        this.mismatches = meterRegistry.counter("patient.idempotency", "result", "mismatch");
+        Gauge.builder("patient.idempotency.cache.size", this, IdempotencyStore::size).register(meterRegistry);
+    }
+
+    /// Runs create unless key was used before, in which case the response of that first request is returned.
+    /// Throws IdempotencyKeyMismatchException when key was used for a different request and
+    /// IdempotentRequestInProgressException while the first request has not completed yet.
+    /// A request that fails frees its key again, so the client can retry it with the same key.
+    public Result createOnce(String key, PatientRequestDTO request, Supplier<PatientResponseDTO> create) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(request);
+
+        Optional<PatientResponseDTO> cached = cached(key, requestHash);
+        if (cached.isPresent()) {
+            memoryHits.increment();
+            return new Result(cached.get(), true);
+        }
+
+        Optional<IdempotencyKey> existing = claim(key, requestHash);
+        if (existing.isPresent()) {
+            return new Result(storedResponse(existing.get(), requestHash), true);
+        }
+
+        PatientResponseDTO response;
+        try {
+            response = create.get();
+        } catch (RuntimeException e) {
+            shardRouter.onDirectory(status -> keyRepository.release(key));
+            throw e;
+        }
+        created.increment();
+        // The patient is committed at this point; if completing fails, the claim is taken over by a later retry
+        String json = write(response);
+        shardRouter.onDirectory(status -> keyRepository.complete(key, json));
+        remember(key, requestHash, response);
+        return new Result(response, false);
+    }
+
+    @Scheduled(fixedDelayString = "${patient.idempotency.purge-interval:1h}")
+    public void purgeExpired() {
+        int purged = shardRouter.onDirectory(status -> keyRepository.deleteCreatedBefore(Instant.now().minus(ttl)));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /// Empty if key is now claimed for this request, otherwise the claim of the request that holds it
+    private Optional<IdempotencyKey> claim(String key, String requestHash) {
+        Instant now = Instant.now();
+        try {
+            shardRouter.onDirectory(status -> keyRepository.saveAndFlush(new IdempotencyKey(key, requestHash, now)));
+            return Optional.empty();
+        } catch (DataIntegrityViolationException e) {
+            return shardRouter.onDirectory(status -> {
+                if (keyRepository.takeOver(key, requestHash, now, now.minus(abandonedAfter)) > 0) {
+                    log.warn("Taking over abandoned idempotency key {}", key);
+                    return Optional.empty();
+                }
+                // Gone if the first request failed and released the key meanwhile; reported as in progress, so the
+                // client retries
+                return Optional.of(keyRepository.findById(key)
+                        .orElseGet(() -> new IdempotencyKey(key, requestHash, now)));
+            });
+        }
+    }
+
+    private PatientResponseDTO storedResponse(IdempotencyKey existing, String requestHash) {
+        if (!existing.getRequestHash().equals(requestHash)) {
+            mismatches.increment();
+            throw new IdempotencyKeyMismatchException("Idempotency-Key was already used for a different request");
+        }
+        if (existing.getResponse() == null) {
+            inProgress.increment();
+            throw new IdempotentRequestInProgressException("A request with this Idempotency-Key is still running");
+        }
+        storedHits.increment();
+        PatientResponseDTO response = read(existing.getResponse());
+        remember(existing.getKey(), requestHash, response);
+        return response;
+    }
+
+    private Optional<PatientResponseDTO> cached(String key, String requestHash) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            CachedResponse cached = cache.get(key);
+            if (cached == null || now - cached.expiresAt() >= 0) {
+                return Optional.empty();
+            }
+            if (!cached.requestHash().equals(requestHash)) {
+                mismatches.increment();
+                throw new IdempotencyKeyMismatchException("Idempotency-Key was already used for a different request");
+            }
+            return Optional.of(cached.response());
+        }
+    }
+
+    private void remember(String key, String requestHash, PatientResponseDTO response) {
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        synchronized (cache) {
+            cache.put(key, new CachedResponse(requestHash, response, expiresAt));
+        }
+    }
+
+    /// SHA-256 of the request's JSON, so the same key with a different body is recognised
+    private String hash(PatientRequestDTO request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(requestWriter.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String write(PatientResponseDTO response) {
+        try {
+            return responseWriter.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PatientResponseDTO read(String json) {
+        try {
+            return responseReader.readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /// replayed is true when response is the stored result of an earlier request with the same key
+    public record Result(PatientResponseDTO response, boolean replayed) {
+    }
+
+    private record CachedResponse(String requestHash, PatientResponseDTO response, long expiresAt) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.pm.patientservice.service;
+
+import com.pm.patientservice.dto.PatientResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Component
+public class PatientCache {
+    // Patients by id for GET /patients/{id}, in a bounded LRU map. PatientService evicts entries on update and
+    // delete, PatientCacheInvalidationListener does the same for changes made by other instances; the TTL bounds
+    // staleness for anything neither of them sees, such as edits made directly in the database.
+
+    private final long ttlNanos;
+    private final Map<UUID, CachedPatient> cache;
+    // Bumped by every eviction, lets a load that raced with an update drop its now stale result
+    private long evictions;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PatientCache(@Value("${patient.cache.max-entries:10000}") int maxEntries,
+                        @Value("${patient.cache.ttl:5m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.ttlNanos = ttl.toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedPatient> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = meterRegistry.counter("patient.cache", "result", "hit");
+        this.misses = meterRegistry.counter("patient.cache", "result", "miss");
+        Gauge.builder("patient.cache.size", this, PatientCache::size).register(meterRegistry);
+    }
+
+    public Optional<PatientResponseDTO> get(UUID id) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            CachedPatient cached = cache.get(id);
+            if (cached != null && now - cached.expiresAt() < 0) {
+                hits.increment();
+                return Optional.of(cached.patient());
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /// Pass the result to put after loading, so the load is discarded if anything was evicted meanwhile
+    public long stamp() {
+        synchronized (cache) {
+            return evictions;
+        }
+    }
+
+    public void put(UUID id, PatientResponseDTO patient, long stamp) {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        synchronized (cache) {
+            if (evictions == stamp) {
+                cache.put(id, new CachedPatient(patient, expiresAt));
+            }
+        }
+    }
+
+    public void evict(UUID id) {
+        synchronized (cache) {
+            evictions++;
+            cache.remove(id);
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private record CachedPatient(PatientResponseDTO patient, long expiresAt) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.pm.patientservice.service;
+
+import com.pm.patientservice.model.Patient;
+import com.pm.patientservice.model.PatientTombstone;
+import com.pm.patientservice.repository.PatientTombstoneRepository;
+import com.pm.patientservice.shard.ShardRouter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Component
+public class PatientChangeTracker {
+    // Stamps every patient write with a value of patient_change_seq for GET /patients/changes, and records deletes
+    // as tombstones. Callers stamp inside the transaction that makes the change, so the stamp commits with it.
+    // A whole transaction shares one value (the feed pages on (seq, id)), so a bulk import costs a single
+    // sequence call.
+
+    private static final String SEQUENCE = "patient_change_seq";
+
+    private final EntityManager entityManager;
+    private final PatientTombstoneRepository tombstoneRepository;
+    private final ShardRouter shardRouter;
+    private final String nextValueSql;
+
+    public PatientChangeTracker(EntityManager entityManager,
+                                EntityManagerFactory entityManagerFactory,
+                                PatientTombstoneRepository tombstoneRepository,
+                                ShardRouter shardRouter) {
+        this.entityManager = entityManager;
+        this.tombstoneRepository = tombstoneRepository;
+        this.shardRouter = shardRouter;
+        this.nextValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(SEQUENCE);
+    }
+
+    public void stamp(Patient patient) {
+        stamp(List.of(patient));
+    }
+
+    public void stamp(Collection<Patient> patients) {
+        long seq = nextSeq();
+        Instant now = Instant.now();
+        for (Patient patient : patients) {
+            patient.setChangeSeq(seq);
+            patient.setUpdatedAt(now);
+        }
+    }
+
+    public void recordDeletion(UUID patientId) {
+        tombstoneRepository.save(new PatientTombstone(patientId, nextSeq(), Instant.now()));
+    }
+
+    /// Sharded, every shard takes its values from shard 0's sequence, so the feed can merge shards by (seq, id)
+    private long nextSeq() {
+        return shardRouter.isSharded()
+                ? shardRouter.onDirectory(status -> querySeq())
+                : querySeq();
+    }
+
+    private long querySeq() {
+        return ((Number) entityManager.createNativeQuery(nextValueSql).getSingleResult()).longValue();
+    }
+}
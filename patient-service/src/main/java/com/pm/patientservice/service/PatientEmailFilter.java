@@ -0,0 +1,109 @@
+package com.pm.patientservice.service;
+
+import com.pm.patientservice.shard.EmailDirectory;
+import com.pm.patientservice.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class PatientEmailFilter {
+    // Bloom filter over every patient email, so the uniqueness check for a new email (nearly every create) is
+    // answered in memory instead of by a query to the EmailDirectory. A miss is definite; a hit may be a false
+    // positive and is confirmed against the database. Emails are added before they are written and never removed,
+    // so a changed or deleted patient's old email only costs a query, and the unique constraint on patient.email
+    // (patient_email when sharded) stays the final guard. Until the startup warm-up has finished every check goes
+    // to the database.
+
+    private final EmailDirectory emailDirectory;
+    private final BloomFilter filter;
+    private final long expectedEmails;
+    private volatile boolean warm;
+
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final Counter truePositives;
+
+    public PatientEmailFilter(EmailDirectory emailDirectory,
+                              @Value("${patient.email-filter.expected-emails:1000000}") long expectedEmails,
+                              @Value("${patient.email-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                              MeterRegistry meterRegistry) {
+        this.emailDirectory = emailDirectory;
+        this.filter = new BloomFilter(expectedEmails, falsePositiveProbability);
+        this.expectedEmails = expectedEmails;
+
+        FunctionCounter.builder("patient.email.filter", negatives, AtomicLong::get)
+                .description("Email checks answered by the filter without a query")
+                .tag("result", "negative").register(meterRegistry);
+        FunctionCounter.builder("patient.email.filter", falsePositives, AtomicLong::get)
+                .description("Email checks the filter passed to the database for an email that was free")
+                .tag("result", "false_positive").register(meterRegistry);
+        this.truePositives = meterRegistry.counter("patient.email.filter", "result", "true_positive");
+        Gauge.builder("patient.email.filter.false.positive.rate", this, PatientEmailFilter::falsePositiveRate)
+                .description("Share of free emails the filter could not rule out")
+                .register(meterRegistry);
+
+        log.info("Email filter: {} bits, {} hashes", filter.bitCount(), filter.hashCount());
+    }
+
+    /// Whether a patient already has this email, querying only when the filter cannot rule it out
+    public boolean isTaken(String email) {
+        if (!warm) {
+            return emailDirectory.exists(email);
+        }
+        if (!filter.mightContain(email)) {
+            negatives.incrementAndGet();
+            return false;
+        }
+        boolean exists = emailDirectory.exists(email);
+        if (exists) {
+            truePositives.increment();
+        } else {
+            falsePositives.incrementAndGet();
+        }
+        return exists;
+    }
+
+    /// The emails the filter cannot rule out, the only ones a set-based duplicate query needs to look up
+    public List<String> candidates(Collection<String> emails) {
+        return warm ? emails.stream().filter(filter::mightContain).toList() : List.copyOf(emails);
+    }
+
+    /// Call before the email is written, so it is never missing from the filter while it is in the database
+    public void add(String email) {
+        filter.add(email);
+    }
+
+    public void addAll(Collection<String> emails) {
+        emails.forEach(filter::add);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long startedAt = System.nanoTime();
+        long count = emailDirectory.forEachEmail(filter::add);
+        warm = true;
+        log.info("Email filter warmed with {} emails in {} ms", count, (System.nanoTime() - startedAt) / 1_000_000);
+        if (count > expectedEmails) {
+            log.warn("{} patient emails exceed patient.email-filter.expected-emails ({}), false positives will rise",
+                    count, expectedEmails);
+        }
+    }
+
+    private double falsePositiveRate() {
+        long falsePositive = falsePositives.get();
+        long checked = falsePositive + negatives.get();
+        return checked == 0 ? 0 : (double) falsePositive / checked;
+    }
+}
@@ -0,0 +1,268 @@
+package com.pm.patientservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pm.patientservice.dto.PatientImportResponseDTO;
+import com.pm.patientservice.dto.PatientImportResultDTO;
+import com.pm.patientservice.dto.PatientRequestDTO;
+import com.pm.patientservice.dto.validators.CreatePatientValidationGroup;
+import com.pm.patientservice.exception.EmailAlreadyExists;
+import com.pm.patientservice.exception.InvalidImportException;
+import com.pm.patientservice.kafka.KafkaProducer;
+import com.pm.patientservice.mapper.PatientMapper;
+import com.pm.patientservice.model.BillingOutbox;
+import com.pm.patientservice.model.Patient;
+import com.pm.patientservice.repository.BillingOutboxRepository;
+import com.pm.patientservice.repository.PatientRepository;
+import com.pm.patientservice.shard.EmailDirectory;
+import com.pm.patientservice.shard.ShardRouter;
+import com.pm.patientservice.util.UniqueViolations;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class PatientImportService {
+    // Bulk counterpart of PatientService.createPatient, used to onboard a whole clinic. Rather than an
+    // existsByEmail, an insert, a billing call and a Kafka send per patient, each step runs once over the
+    // whole import: rows are validated up front, duplicates are found with set-based queries, inserts go
+    // out as JDBC batches (hibernate.jdbc.batch_size) together with the billing outbox rows, and events are sent
+    // in batches. BillingOutboxRelay then creates the billing accounts in batches as well.
+
+    private static final int EMAIL_LOOKUP_CHUNK = 1000;
+
+    private final PatientRepository patientRepository;
+    private final BillingOutboxRepository billingOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PatientChangeTracker changeTracker;
+    private final PatientEmailFilter emailFilter;
+    private final EmailDirectory emailDirectory;
+    private final ShardRouter shardRouter;
+    private final KafkaProducer kafkaProducer;
+    private final Validator validator;
+    private final ObjectReader patientReader;
+    private final int maxRows;
+
+    public PatientImportService(PatientRepository patientRepository,
+                                BillingOutboxRepository billingOutboxRepository,
+                                TransactionTemplate transactionTemplate,
+                                PatientChangeTracker changeTracker,
+                                PatientEmailFilter emailFilter,
+                                EmailDirectory emailDirectory,
+                                ShardRouter shardRouter,
+                                KafkaProducer kafkaProducer,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                @Value("${patient.import.max-rows:10000}") int maxRows) {
+        this.patientRepository = patientRepository;
+        this.billingOutboxRepository = billingOutboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.changeTracker = changeTracker;
+        this.emailFilter = emailFilter;
+        this.emailDirectory = emailDirectory;
+        this.shardRouter = shardRouter;
+        this.kafkaProducer = kafkaProducer;
+        this.validator = validator;
+        this.patientReader = objectMapper.readerFor(PatientRequestDTO.class);
+        this.maxRows = maxRows;
+    }
+
+    /// Reads one patient per line (blank lines are skipped) and imports them like importPatients(List)
+    public PatientImportResponseDTO importPatients(InputStream ndjson) throws IOException {
+        List<PatientRequestDTO> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (rows.size() == maxRows) {
+                throw new InvalidImportException("Import exceeds " + maxRows + " patients");
+            }
+            try {
+                rows.add(patientReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                throw new InvalidImportException("Line " + lineNumber + " is not a valid patient");
+            }
+        }
+        return importPatients(rows);
+    }
+
+    /// Creates every valid patient whose email is not taken. Invalid rows and duplicates (of an existing
+    /// patient or of an earlier row) are skipped and reported; nothing is skipped silently. Sharded, the rows
+    /// of a shard whose transaction failed are reported as FAILED while the other shards' rows are created.
+    public PatientImportResponseDTO importPatients(List<PatientRequestDTO> rows) {
+        if (rows.isEmpty()) {
+            throw new InvalidImportException("Import contains no patients");
+        }
+        if (rows.size() > maxRows) {
+            throw new InvalidImportException("Import exceeds " + maxRows + " patients");
+        }
+
+        PatientImportResultDTO[] results = new PatientImportResultDTO[rows.size()];
+        // First valid row for each email, in request order
+        Map<String, Integer> rowByEmail = new LinkedHashMap<>();
+        for (int row = 0; row < rows.size(); row++) {
+            Map<String, String> errors = validate(rows.get(row));
+            if (!errors.isEmpty()) {
+                results[row] = rejected(row, PatientImportResultDTO.INVALID, errors);
+            } else if (rowByEmail.putIfAbsent(rows.get(row).getEmail(), row) != null) {
+                results[row] = rejected(row, PatientImportResultDTO.DUPLICATE, null);
+            }
+        }
+
+        Set<String> existingEmails = findExistingEmails(rowByEmail.keySet());
+        List<Patient> patients = new ArrayList<>();
+        List<Integer> patientRows = new ArrayList<>();
+        rowByEmail.forEach((email, row) -> {
+            if (existingEmails.contains(email)) {
+                results[row] = rejected(row, PatientImportResultDTO.DUPLICATE, null);
+            } else {
+                patients.add(PatientMapper.toEntity(rows.get(row)));
+                patientRows.add(row);
+            }
+        });
+
+        emailFilter.addAll(patients.stream().map(Patient::getEmail).toList());
+        Map<Integer, String> failedShards = save(patients);
+        List<Patient> savedPatients = new ArrayList<>();
+        for (int i = 0; i < patients.size(); i++) {
+            Patient patient = patients.get(i);
+            int row = patientRows.get(i);
+            String failure = failedShards.get(shardRouter.shardFor(patient.getId()));
+            if (failure != null) {
+                results[row] = rejected(row, PatientImportResultDTO.FAILED, Map.of("patient", failure));
+                continue;
+            }
+            savedPatients.add(patient);
+            PatientImportResultDTO result = new PatientImportResultDTO();
+            result.setRow(row);
+            result.setStatus(PatientImportResultDTO.CREATED);
+            result.setId(patient.getId().toString());
+            results[row] = result;
+        }
+        if (!savedPatients.isEmpty()) {
+            kafkaProducer.sendEvents(savedPatients);
+        }
+
+        PatientImportResponseDTO response = new PatientImportResponseDTO();
+        response.setCreated(savedPatients.size());
+        response.setRejected(rows.size() - savedPatients.size());
+        response.setResults(List.of(results));
+        log.info("Imported {} of {} patients", savedPatients.size(), rows.size());
+        return response;
+    }
+
+    private Map<String, String> validate(PatientRequestDTO patient) {
+        Map<String, String> errors = new HashMap<>();
+        if (patient == null) {
+            errors.put("patient", "Patient must be an object");
+            return errors;
+        }
+        validator.validate(patient, Default.class, CreatePatientValidationGroup.class).forEach(
+                violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        if (!errors.containsKey("birthDate") && !isDate(patient.getBirthDate())) {
+            errors.put("birthDate", "Date of Birth must be a yyyy-MM-dd date");
+        }
+        if (!errors.containsKey("registeredDate") && !isDate(patient.getRegisteredDate())) {
+            errors.put("registeredDate", "Registered Date must be a yyyy-MM-dd date");
+        }
+        return errors;
+    }
+
+    private static boolean isDate(String value) {
+        try {
+            LocalDate.parse(value);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /// Only emails PatientEmailFilter cannot rule out are looked up, for a fresh clinic usually next to none
+    private Set<String> findExistingEmails(Set<String> emails) {
+        Set<String> existing = new HashSet<>();
+        List<String> all = emailFilter.candidates(emails);
+        for (int from = 0; from < all.size(); from += EMAIL_LOOKUP_CHUNK) {
+            existing.addAll(emailDirectory.findExisting(
+                    all.subList(from, Math.min(from + EMAIL_LOOKUP_CHUNK, all.size()))));
+        }
+        return existing;
+    }
+
+    /// Patients and their billing outbox rows in one transaction per shard, flushed as JDBC batch inserts.
+    /// Sharded, the emails are claimed in the EmailDirectory first. A shard that fails does not stop the others:
+    /// the patients committed elsewhere stay, and only the failed shards' claims are released. Returns the failed
+    /// shards with the reason to report for their rows, empty when everything was saved. Throws when nothing
+    /// could be saved at all, so a single database that is down or rejects the batch still fails the request.
+    private Map<Integer, String> save(List<Patient> patients) {
+        emailDirectory.claimAll(patients.stream().collect(Collectors.toMap(Patient::getEmail, Patient::getId)));
+        Map<Integer, List<Patient>> patientsByShard = patients.stream()
+                .collect(Collectors.groupingBy(patient -> shardRouter.shardFor(patient.getId())));
+        Map<Integer, String> failedShards = new HashMap<>();
+        RuntimeException firstFailure = null;
+        for (Map.Entry<Integer, List<Patient>> entry : patientsByShard.entrySet()) {
+            List<Patient> shardPatients = entry.getValue();
+            try {
+                shardRouter.onShard(entry.getKey(), () -> transactionTemplate.execute(status -> {
+                    changeTracker.stamp(shardPatients);
+                    patientRepository.saveAll(shardPatients);
+                    billingOutboxRepository.saveAll(shardPatients.stream().map(BillingOutbox::forPatient).toList());
+                    return null;
+                }));
+            } catch (RuntimeException e) {
+                log.warn("Importing {} patients into shard {} failed", shardPatients.size(), entry.getKey(), e);
+                emailDirectory.releaseAll(shardPatients.stream()
+                        .collect(Collectors.toMap(Patient::getEmail, Patient::getId)));
+                failedShards.put(entry.getKey(), isEmailConflict(e)
+                        ? "Another request took an email of this batch meanwhile, send the row again to find out which"
+                        : "Could not be saved, send the row again");
+                firstFailure = firstFailure != null ? firstFailure : e;
+            }
+        }
+        if (failedShards.size() == patientsByShard.size() && firstFailure != null) {
+            if (isEmailConflict(firstFailure)) {
+                throw new EmailAlreadyExists("Email already exists");
+            }
+            throw firstFailure;
+        }
+        return failedShards;
+    }
+
+    /// Another request took one of the emails after the duplicate check
+    private static boolean isEmailConflict(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException violation && UniqueViolations.isOn(violation, "email");
+    }
+
+    private static PatientImportResultDTO rejected(int row, String status, Map<String, String> errors) {
+        PatientImportResultDTO result = new PatientImportResultDTO();
+        result.setRow(row);
+        result.setStatus(status);
+        result.setErrors(errors);
+        return result;
+    }
+}
@@ -1,54 +1,350 @@
 package com.pm.patientservice.service;
 
-import billing.BillingServiceGrpc;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pm.patientservice.datasource.ReadWriteRoutingDataSource;
+import com.pm.patientservice.dto.PatientChangeDTO;
+import com.pm.patientservice.dto.PatientChangesResponseDTO;
+import com.pm.patientservice.dto.PatientPageResponseDTO;
 import com.pm.patientservice.dto.PatientRequestDTO;
 import com.pm.patientservice.dto.PatientResponseDTO;
 import com.pm.patientservice.exception.EmailAlreadyExists;
+import com.pm.patientservice.exception.InvalidSearchException;
 import com.pm.patientservice.exception.PatientNotFountException;
 
-import com.pm.patientservice.grpc.BillingServiceGrpcClient;
 import com.pm.patientservice.kafka.KafkaProducer;
 import com.pm.patientservice.mapper.PatientMapper;
+import com.pm.patientservice.model.BillingOutbox;
 import com.pm.patientservice.model.Patient;
+import com.pm.patientservice.repository.BillingOutboxRepository;
+import com.pm.patientservice.repository.OffsetPageRequest;
 import com.pm.patientservice.repository.PatientRepository;
+import com.pm.patientservice.repository.PatientSpecifications;
+import com.pm.patientservice.repository.PatientRepositoryCustom.KeyedPatient;
+import com.pm.patientservice.repository.PatientTombstoneRepository;
+import com.pm.patientservice.shard.EmailDirectory;
+import com.pm.patientservice.shard.MergedShardIterator;
+import com.pm.patientservice.shard.ShardRouter;
+import com.pm.patientservice.util.CursorCodec;
+import com.pm.patientservice.util.UniqueViolations;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class PatientService {
 
     private final PatientRepository patientRepository;
-    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final BillingOutboxRepository billingOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PatientCache patientCache;
+    private final PatientEmailFilter emailFilter;
+    private final PatientChangeTracker changeTracker;
+    private final PatientTombstoneRepository tombstoneRepository;
+    private final ShardRouter shardRouter;
+    private final EmailDirectory emailDirectory;
     private final KafkaProducer kafkaProducer;
+    private final ObjectMapper objectMapper;
 
+    private static final int SUBSTRING_SEARCH_MIN_LENGTH = 3;
 
-    public List<PatientResponseDTO> getPatients(){
-        List<Patient> patients = patientRepository.findAll();
+    /// Same order as the databases sort UUIDs: as unsigned bytes
+    private static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
 
-        List<PatientResponseDTO> patientResponseDTOS = patients.stream()
-                .map(PatientMapper::toDto).toList();
+    private static final Comparator<PatientResponseDTO> PATIENT_ORDER =
+            Comparator.comparing(PatientResponseDTO::getId, ID_ORDER);
 
-        return patientResponseDTOS;
+    private static final Comparator<KeyedPatient> KEYED_ORDER = Comparator.comparing(KeyedPatient::key)
+            .thenComparing(keyed -> keyed.patient().getId(), ID_ORDER);
+
+    /// Same order as the feed's (changeSeq, id) index
+    private static final Comparator<PatientChangeDTO> CHANGE_ORDER = Comparator
+            .comparingLong(PatientChangeDTO::getChangeSeq)
+            .thenComparing(PatientChangeDTO::getId, ID_ORDER);
+
+    @Value("${patient.changes.settle-time:10s}")
+    private Duration changesSettleTime;
+
+
+    /// One page of patients ordered by id. cursor is the nextCursor of the previous page, null for the first one.
+    @Transactional(readOnly = true)
+    public PatientPageResponseDTO getPatients(String cursor, int size){
+        // One extra row tells whether there is a next page without a count query
+        Limit limit = Limit.of(size + 1);
+        UUID after = cursor == null ? null : CursorCodec.decodeUuid(cursor);
+        List<PatientResponseDTO> patients = merge(shardRouter.onEveryShard(shard -> after == null
+                ? patientRepository.findFirstPage(limit)
+                : patientRepository.findPageAfter(after, limit)), PATIENT_ORDER, size + 1);
+
+        boolean hasNext = patients.size() > size;
+        if (hasNext) {
+            patients = patients.subList(0, size);
+        }
+
+        PatientPageResponseDTO page = new PatientPageResponseDTO();
+        page.setPatients(patients);
+        page.setNextCursor(hasNext ? CursorCodec.encode(patients.get(patients.size() - 1).getId()) : null);
+        return page;
+    }
+
+    /// Like getPatients, restricted to a registration date range (inclusive) and/or birth dates before bornBefore.
+    /// Any filter may be null. Pages are keyed on (date, id) of the filtered date column instead of id alone,
+    /// so each page is a range scan over the date index rather than a walk of the whole primary key.
+    @Transactional(readOnly = true)
+    public PatientPageResponseDTO getPatients(LocalDate registeredFrom, LocalDate registeredTo, LocalDate bornBefore,
+                                              String cursor, int size){
+        if (registeredFrom == null && registeredTo == null && bornBefore == null) {
+            return getPatients(cursor, size);
+        }
+        if (registeredFrom != null && registeredTo != null && registeredFrom.isAfter(registeredTo)) {
+            throw new InvalidSearchException("registeredFrom must not be after registeredTo");
+        }
+
+        List<Specification<Patient>> filters = new ArrayList<>();
+        if (registeredFrom != null) {
+            filters.add(PatientSpecifications.registeredOnOrAfter(registeredFrom));
+        }
+        if (registeredTo != null) {
+            filters.add(PatientSpecifications.registeredOnOrBefore(registeredTo));
+        }
+        if (bornBefore != null) {
+            filters.add(PatientSpecifications.bornBefore(bornBefore));
+        }
+
+        // Walk the registration date index when it is filtered on, it is the narrower range for intake reports
+        boolean byRegistration = registeredFrom != null || registeredTo != null;
+        String keyAttribute = byRegistration ? PatientSpecifications.REGISTRATION_DATE : PatientSpecifications.BIRTH_DATE;
+        if (cursor != null) {
+            CursorCodec.DateKey after = CursorCodec.decodeDateKey(cursor);
+            filters.add(PatientSpecifications.after(keyAttribute, after.date(), after.id()));
+        }
+
+        Specification<Patient> spec = Specification.allOf(filters);
+        List<KeyedPatient> patients = merge(shardRouter.onEveryShard(
+                shard -> patientRepository.findFiltered(spec, keyAttribute, size + 1)), KEYED_ORDER, size + 1);
+
+        boolean hasNext = patients.size() > size;
+        if (hasNext) {
+            patients = patients.subList(0, size);
+        }
+
+        PatientPageResponseDTO page = new PatientPageResponseDTO();
+        page.setPatients(patients.stream().map(KeyedPatient::patient).toList());
+        if (hasNext) {
+            KeyedPatient last = patients.get(patients.size() - 1);
+            page.setNextCursor(CursorCodec.encode(last.key(), last.patient().getId()));
+        }
+        return page;
+    }
+
+    /// Served from PatientCache when possible, so repeated detail views do not reach the database.
+    /// Cache fills read from the primary: a row from a lagging replica would otherwise be cached, and served
+    /// by every later GET, for the whole patient.cache.ttl after the update that evicted it.
+    @Transactional(readOnly = true)
+    public PatientResponseDTO getPatient(UUID id){
+        Optional<PatientResponseDTO> cached = patientCache.get(id);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long stamp = patientCache.stamp();
+        PatientResponseDTO patientDto = ReadWriteRoutingDataSource.readFromPrimary(
+                () -> shardRouter.readFromShard(shardRouter.shardFor(id), () -> patientRepository.findDtoById(id)))
+                .orElseThrow(() -> new PatientNotFountException("Patient not found with id: " + id));
+        patientCache.put(id, patientDto, stamp);
+        return patientDto;
+    }
+
+    /// Creates, updates and deletes after the since cursor (all current patients when since is null), oldest first.
+    /// A change is only handed out once it is patient.changes.settle-time old: change numbers are taken before
+    /// commit, so a slower transaction can commit a lower number after a higher one has been read, and without
+    /// the delay a client that already moved past it would never see it.
+    @Transactional(readOnly = true)
+    public PatientChangesResponseDTO getChanges(String since, int size){
+        CursorCodec.ChangeKey after = since == null
+                ? new CursorCodec.ChangeKey(-1, new UUID(0, 0))
+                : CursorCodec.decodeChangeKey(since);
+        Limit limit = Limit.of(size + 1);
+        List<PatientChangeDTO> changes = merge(shardRouter.onEveryShard(shard -> Stream.concat(
+                        patientRepository.findChangesAfter(after.seq(), after.id(), limit).stream(),
+                        tombstoneRepository.findChangesAfter(after.seq(), after.id(), limit).stream())
+                .sorted(CHANGE_ORDER)
+                .toList()), CHANGE_ORDER, size + 1);
+
+        Instant settledBefore = Instant.now().minus(changesSettleTime);
+        int settled = 0;
+        while (settled < Math.min(size, changes.size())
+                && !changes.get(settled).getChangedAt().isAfter(settledBefore)) {
+            settled++;
+        }
+
+        PatientChangesResponseDTO page = new PatientChangesResponseDTO();
+        page.setChanges(changes.subList(0, settled));
+        if (settled > 0) {
+            PatientChangeDTO last = changes.get(settled - 1);
+            page.setNextCursor(CursorCodec.encode(last.getChangeSeq(), last.getId()));
+        } else {
+            page.setNextCursor(since);
+        }
+        page.setHasMore(settled == size && changes.size() > size
+                && !changes.get(size).getChangedAt().isAfter(settledBefore));
+        return page;
+    }
+
+    /// Cursor of the end of the change feed: getChanges with it as since only returns changes made from now on
+    @Transactional(readOnly = true)
+    public String getChangesHead(){
+        Instant settledBefore = Instant.now().minus(changesSettleTime);
+        long seq = shardRouter.onEveryShard(shard -> Stream.of(
+                        patientRepository.findLastChangeSeqBefore(settledBefore),
+                        tombstoneRepository.findLastChangeSeqBefore(settledBefore))
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(-1)).stream().mapToLong(Long::longValue).max().orElse(-1);
+        // Past every change with that number, whichever patient it was for
+        return CursorCodec.encode(seq, new UUID(-1, -1));
+    }
+
+    /// Patients whose name or email matches q, best matches first. Terms shorter than
+    /// SUBSTRING_SEARCH_MIN_LENGTH only match as a prefix, which is all type-ahead needs and keeps them on an index.
+    @Transactional(readOnly = true)
+    public PatientPageResponseDTO searchPatients(String q, String cursor, int size){
+        String term = q.trim().toLowerCase(Locale.ROOT);
+        if (term.isEmpty()) {
+            throw new InvalidSearchException("Search term must not be blank");
+        }
+        int offset = cursor == null ? 0 : CursorCodec.decodeOffset(cursor);
+        if (shardRouter.isSharded()) {
+            return searchShards(term, offset, size);
+        }
+
+        Slice<PatientResponseDTO> patients = search(term, new OffsetPageRequest(offset, size));
+
+        PatientPageResponseDTO page = new PatientPageResponseDTO();
+        page.setPatients(patients.getContent());
+        page.setNextCursor(patients.hasNext() ? CursorCodec.encode(offset + patients.getNumberOfElements()) : null);
+        return page;
+    }
+
+    /// Every shard returns its first offset + size matches, which contain the merged page. Shards are merged with
+    /// the ranking of SEARCH_ORDER redone in Java; names compare by code point there, a database collation may
+    /// order names differently, which can move a match between pages but not drop it from the results.
+    private PatientPageResponseDTO searchShards(String term, int offset, int size) {
+        Pageable firstMatches = new OffsetPageRequest(0, offset + size);
+        List<Slice<PatientResponseDTO>> slices = shardRouter.onEveryShard(shard -> search(term, firstMatches));
+        List<PatientResponseDTO> matches = slices.stream()
+                .flatMap(slice -> slice.getContent().stream())
+                .sorted(Comparator.comparingInt((PatientResponseDTO patient) -> searchRank(patient, term))
+                        .thenComparing(PatientResponseDTO::getName)
+                        .thenComparing(PatientResponseDTO::getId, ID_ORDER))
+                .toList();
+        boolean hasNext = matches.size() > offset + size || slices.stream().anyMatch(Slice::hasNext);
+        List<PatientResponseDTO> patients = matches.subList(Math.min(offset, matches.size()),
+                Math.min(offset + size, matches.size()));
+
+        PatientPageResponseDTO page = new PatientPageResponseDTO();
+        page.setPatients(patients);
+        page.setNextCursor(hasNext ? CursorCodec.encode(offset + patients.size()) : null);
+        return page;
+    }
+
+    private Slice<PatientResponseDTO> search(String term, Pageable pageable) {
+        String escaped = escapeLike(term);
+        return term.length() < SUBSTRING_SEARCH_MIN_LENGTH
+                ? patientRepository.searchByPrefix(term, escaped + "%", pageable)
+                : patientRepository.searchBySubstring(term, escaped + "%", "%" + escaped + "%", pageable);
+    }
+
+    /// PatientRepository.SEARCH_ORDER's first sort key
+    private static int searchRank(PatientResponseDTO patient, String term) {
+        String name = patient.getName().toLowerCase(Locale.ROOT);
+        String email = patient.getEmail().toLowerCase(Locale.ROOT);
+        if (name.equals(term) || email.equals(term)) {
+            return 0;
+        }
+        return name.startsWith(term) || email.startsWith(term) ? 1 : 2;
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /// Writes every patient to out as newline-delimited JSON, one row at a time.
+    /// Rows are DTO projections that never enter the persistence context, so memory stays flat however large the table is.
+    /// Sharded, all shards are read at once and merged, so the export stays in id order.
+    @Transactional(readOnly = true)
+    public void exportPatients(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(PatientResponseDTO.class);
+        if (shardRouter.isSharded()) {
+            try (MergedShardIterator<PatientResponseDTO> patients =
+                         shardRouter.streamEveryShard(shard -> patientRepository.streamAll(), PATIENT_ORDER)) {
+                write(patients, writer, out);
+            }
+        } else {
+            try (Stream<PatientResponseDTO> patients = patientRepository.streamAll()) {
+                write(patients.iterator(), writer, out);
+            }
+        }
+        out.flush();
+    }
+
+    private static void write(Iterator<PatientResponseDTO> patients, ObjectWriter writer, OutputStream out)
+            throws IOException {
+        while (patients.hasNext()) {
+            out.write(writer.writeValueAsBytes(patients.next()));
+            out.write('\n');
+        }
     }
 
     public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO){
 
-        if (patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
+        if (emailFilter.isTaken(patientRequestDTO.getEmail())) {
             throw new EmailAlreadyExists("Email already exists");
         }
         Patient patient = PatientMapper.toEntity(patientRequestDTO);
-        Patient savedPatient = patientRepository.save(patient);
-
-        billingServiceGrpcClient.createBillingAccount(
-                savedPatient.getId().toString(),
-                savedPatient.getName(),
-                savedPatient.getEmail()
-        );
+        emailFilter.add(patient.getEmail());
+        emailDirectory.claim(patient.getEmail(), patient.getId());
+        // The billing account is created later by BillingOutboxRelay, from an outbox row committed with the patient
+        Patient savedPatient;
+        try {
+            savedPatient = saveUnique(patient.getId(), () -> {
+                changeTracker.stamp(patient);
+                Patient saved = patientRepository.save(patient);
+                billingOutboxRepository.save(BillingOutbox.forPatient(saved));
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            emailDirectory.release(patient.getEmail(), patient.getId());
+            throw e;
+        }
 
         kafkaProducer.sendEvent(savedPatient);
 
@@ -56,29 +352,85 @@ public class PatientService {
     }
 
     public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO){
-        Patient patient = patientRepository.findById(id).orElseThrow(
-                () -> new PatientNotFountException("Patient not found with id: " + id)
-        );
-        if (patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
-            throw new EmailAlreadyExists("Email already exists");
-        }
-        patient.setName(patientRequestDTO.getName());
-        patient.setEmail(patientRequestDTO.getEmail());
-        patient.setAddress(patientRequestDTO.getAddress());
-        patient.setBirthDate(LocalDate.parse(patientRequestDTO.getBirthDate()));
+        String email = patientRequestDTO.getEmail();
+        // Set once the new email is claimed, the old one is released when the update commits
+        AtomicReference<String> replacedEmail = new AtomicReference<>();
+        // Read inside the write transaction, so the patient comes from the primary even when reads use a replica
+        Patient updatedPatient;
+        try {
+            updatedPatient = saveUnique(id, () -> {
+                Patient patient = patientRepository.findById(id).orElseThrow(
+                        () -> new PatientNotFountException("Patient not found with id: " + id)
+                );
+                if (!patient.getEmail().equals(email)) {
+                    if (emailFilter.isTaken(email)) {
+                        throw new EmailAlreadyExists("Email already exists");
+                    }
+                    emailFilter.add(email);
+                    emailDirectory.claim(email, id);
+                    replacedEmail.set(patient.getEmail());
+                }
+                patient.setName(patientRequestDTO.getName());
+                patient.setEmail(email);
+                patient.setAddress(patientRequestDTO.getAddress());
+                patient.setBirthDate(LocalDate.parse(patientRequestDTO.getBirthDate()));
 
-        Patient updatedPatient = patientRepository.save(patient);
+                changeTracker.stamp(patient);
+                return patientRepository.save(patient);
+            });
+        } catch (RuntimeException e) {
+            if (replacedEmail.get() != null) {
+                emailDirectory.release(email, id);
+            }
+            throw e;
+        }
+        if (replacedEmail.get() != null) {
+            emailDirectory.release(replacedEmail.get(), id);
+        }
+        patientCache.evict(id);
+        kafkaProducer.sendEvent(updatedPatient, KafkaProducer.PATIENT_UPDATED);
         return PatientMapper.toDto(updatedPatient);
 
     }
 
 
     public void deletePatient(UUID id){
-        Patient patient = patientRepository.findById(id).orElseThrow(
-                () -> new PatientNotFountException("Patient not found with id: " + id)
-        );
-        patientRepository.delete(patient);
+        Patient patient = shardRouter.onShard(shardRouter.shardFor(id), () -> transactionTemplate.execute(status -> {
+            Patient deleted = patientRepository.findById(id).orElseThrow(
+                    () -> new PatientNotFountException("Patient not found with id: " + id)
+            );
+            patientRepository.delete(deleted);
+            changeTracker.recordDeletion(id);
+            return deleted;
+        }));
+        emailDirectory.release(patient.getEmail(), id);
+        patientCache.evict(id);
+        kafkaProducer.sendEvent(patient, KafkaProducer.PATIENT_DELETED);
     }
 
+    /// Runs the write in a transaction on the patient's shard. The email check above is not atomic with it, so the
+    /// unique constraint decides when two requests claim the same email at once. Other integrity violations are
+    /// not duplicates and are rethrown as they are.
+    private Patient saveUnique(UUID id, Supplier<Patient> write) {
+        try {
+            return shardRouter.onShard(shardRouter.shardFor(id), () -> transactionTemplate.execute(status -> write.get()));
+        } catch (DataIntegrityViolationException e) {
+            if (UniqueViolations.isOn(e, "email")) {
+                throw new EmailAlreadyExists("Email already exists");
+            }
+            throw e;
+        }
+    }
 
+    /// The first limit rows of the per-shard results, each sorted by order; unsharded that is the only result
+    private static <T> List<T> merge(List<List<T>> shardResults, Comparator<T> order, int limit) {
+        if (shardResults.size() == 1) {
+            return shardResults.get(0);
+        }
+        return shardResults.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
 }
@@ -0,0 +1,133 @@
+package com.pm.patientservice.shard;
+
+import com.pm.patientservice.exception.EmailAlreadyExists;
+import com.pm.patientservice.model.PatientEmail;
+import com.pm.patientservice.repository.PatientEmailRepository;
+import com.pm.patientservice.repository.PatientRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class EmailDirectory {
+    // Which emails are taken. Unsharded, that is the patient table itself and its unique constraint, and claims
+    // are no-ops. Sharded, an email is claimed in patient_email on shard 0 before the patient is written to its
+    // shard and released after it is deleted or changed, so two shards can never accept the same email. A claim
+    // and the patient write are separate transactions: a failed write releases its claim, only a crash between
+    // them can leave an orphaned claim behind (it blocks that email until the entry is deleted).
+
+    private static final int PLACEMENT_SAMPLE = 100;
+
+    private final ShardRouter shardRouter;
+    private final PatientRepository patientRepository;
+    private final PatientEmailRepository emailRepository;
+
+    public EmailDirectory(ShardRouter shardRouter,
+                          PatientRepository patientRepository,
+                          PatientEmailRepository emailRepository) {
+        this.shardRouter = shardRouter;
+        this.patientRepository = patientRepository;
+        this.emailRepository = emailRepository;
+    }
+
+    @PostConstruct
+    void addMissingEntries() {
+        if (shardRouter.isSharded()) {
+            checkPlacement();
+            int added = shardRouter.onDirectory(status -> emailRepository.addMissingFromPatients());
+            if (added > 0) {
+                log.info("Added {} shard 0 patients to the email directory", added);
+            }
+        }
+    }
+
+    /// Patients are only looked up on shard hash(id) % N, so patients written before sharding was switched on
+    /// would answer 404 and still hold their emails here. Refuses to start when a sample of a shard's patients
+    /// contains one of another shard.
+    private void checkPlacement() {
+        List<Long> misplaced = shardRouter.onEveryShard(shard -> patientRepository.findIds(Limit.of(PLACEMENT_SAMPLE))
+                .stream()
+                .filter(id -> shardRouter.shardFor(id) != shard)
+                .count());
+        for (int shard = 0; shard < misplaced.size(); shard++) {
+            if (misplaced.get(shard) > 0) {
+                throw new IllegalStateException("Shard " + shard + " holds patients of other shards. Sharding "
+                        + "must start from empty databases, or existing patients must first be moved to shard "
+                        + "hash(id) % " + shardRouter.shardCount());
+            }
+        }
+    }
+
+    public boolean exists(String email) {
+        return shardRouter.isSharded()
+                ? shardRouter.onDirectory(status -> emailRepository.existsById(email))
+                : patientRepository.existsByEmail(email);
+    }
+
+    /// The subset of emails that are taken, in one query
+    public Set<String> findExisting(Collection<String> emails) {
+        return shardRouter.isSharded()
+                ? shardRouter.onDirectory(status -> emailRepository.findExistingEmails(emails))
+                : patientRepository.findExistingEmails(emails);
+    }
+
+    /// Calls action with every taken email, streamed from a database cursor; returns how many there were
+    public long forEachEmail(Consumer<String> action) {
+        return shardRouter.onDirectory(status -> {
+            long count = 0;
+            try (Stream<String> emails = shardRouter.isSharded()
+                    ? emailRepository.streamEmails()
+                    : patientRepository.streamEmails()) {
+                for (Iterator<String> iterator = emails.iterator(); iterator.hasNext(); count++) {
+                    action.accept(iterator.next());
+                }
+            }
+            return count;
+        });
+    }
+
+    /// Throws EmailAlreadyExists when another patient holds the email
+    public void claim(String email, UUID patientId) {
+        claimAll(Map.of(email, patientId));
+    }
+
+    /// All or nothing: throws EmailAlreadyExists when any of the emails is held already
+    public void claimAll(Map<String, UUID> patientIdByEmail) {
+        if (!shardRouter.isSharded() || patientIdByEmail.isEmpty()) {
+            return;
+        }
+        try {
+            shardRouter.onDirectory(status -> emailRepository.saveAll(patientIdByEmail.entrySet().stream()
+                    .map(entry -> new PatientEmail(entry.getKey(), entry.getValue()))
+                    .toList()));
+        } catch (DataIntegrityViolationException e) {
+            throw new EmailAlreadyExists("Email already exists");
+        }
+    }
+
+    public void release(String email, UUID patientId) {
+        releaseAll(Map.of(email, patientId));
+    }
+
+    public void releaseAll(Map<String, UUID> patientIdByEmail) {
+        if (!shardRouter.isSharded() || patientIdByEmail.isEmpty()) {
+            return;
+        }
+        shardRouter.onDirectory(status -> {
+            patientIdByEmail.forEach(emailRepository::deleteByEmailAndPatientId);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.pm.patientservice.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+/// k-way merge of already sorted per-shard streams. Each shard is read by its own producer into a small bounded
+/// queue, so the shards are read in parallel while memory stays at a few rows per shard. close stops the producers.
+public class MergedShardIterator<T> implements Iterator<T>, AutoCloseable {
+
+    static final int QUEUE_CAPACITY = 256;
+
+    /// Put on a queue after the last row of its shard
+    private static final Object END = new Object();
+
+    private record Failure(RuntimeException cause) {
+    }
+
+    private record Head<T>(T row, int shard) {
+    }
+
+    private final List<BlockingQueue<Object>> queues;
+    private final List<Future<?>> producers = new ArrayList<>();
+    private final PriorityQueue<Head<T>> heads;
+    private boolean started;
+
+    MergedShardIterator(int shardCount, Comparator<T> order) {
+        this.queues = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        }
+        this.heads = new PriorityQueue<>(shardCount, Comparator.comparing(Head::row, order));
+    }
+
+    BlockingQueue<Object> queue(int shard) {
+        return queues.get(shard);
+    }
+
+    void addProducer(Future<?> producer) {
+        producers.add(producer);
+    }
+
+    /// Producer side: the rows of one shard, then END; a failure is handed to the reading thread
+    static void produce(BlockingQueue<Object> queue, Iterator<?> rows) throws InterruptedException {
+        try {
+            while (rows.hasNext()) {
+                queue.put(rows.next());
+            }
+        } catch (RuntimeException e) {
+            queue.put(new Failure(e));
+            return;
+        }
+        queue.put(END);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            for (int shard = 0; shard < queues.size(); shard++) {
+                refill(shard);
+            }
+        }
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Head<T> head = heads.poll();
+        refill(head.shard());
+        return head.row();
+    }
+
+    @Override
+    public void close() {
+        producers.forEach(producer -> producer.cancel(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void refill(int shard) {
+        Object item;
+        try {
+            item = queues.get(shard).take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        if (item instanceof Failure failure) {
+            throw failure.cause();
+        }
+        if (item != END) {
+            heads.add(new Head<>((T) item, shard));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.pm.patientservice.shard;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class ShardRouter {
+    // Decides which database a piece of patient work runs against. A patient lives on shard hash(id) % shardCount;
+    // shard 0 (spring.datasource) additionally holds the email directory and the change sequence shared by all
+    // shards. With patient.sharding.shard-urls unset there is a single shard and every method here runs the work
+    // directly, so unsharded deployments behave exactly as before.
+    // The shard count is part of the data layout: changing it requires moving existing patients to their new shard.
+
+    private final int shardCount;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate newTransaction;
+    private final ExecutorService executor;
+    private final ExecutorService streamExecutor;
+
+    public ShardRouter(@Value("${patient.sharding.shard-urls:}") List<String> shardUrls,
+                       @Value("${patient.sharding.query-threads:0}") int queryThreads,
+                       PlatformTransactionManager transactionManager) {
+        this.shardCount = 1 + shardUrls.size();
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        if (isSharded()) {
+            int threads = queryThreads > 0 ? queryThreads : 2 * shardCount;
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-query-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            AtomicInteger streamNumber = new AtomicInteger();
+            this.streamExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "shard-stream-" + streamNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Patients are sharded across {} databases, {} query threads", shardCount, threads);
+        } else {
+            this.executor = null;
+            this.streamExecutor = null;
+        }
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    /// Stable for a given shard count: both halves of the UUID folded into an int, modulo the count
+    public int shardFor(UUID id) {
+        long bits = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        return Math.floorMod((int) (bits ^ (bits >>> 32)), shardCount);
+    }
+
+    /// Runs work with shard selected; transactions work starts, and connections it opens, go to that shard.
+    /// Must not be called inside a transaction of another shard unless work only uses new transactions.
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        Integer previous = ShardRoutingDataSource.select(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardRoutingDataSource.select(previous);
+        }
+    }
+
+    /// Runs work in a transaction of its own on shard 0, also from inside a transaction on another shard
+    public <T> T onDirectory(TransactionCallback<T> work) {
+        return onShard(0, () -> newTransaction.execute(work));
+    }
+
+    /// Runs query in a read-only transaction on every shard in parallel, results in shard order.
+    /// Unsharded, it runs on the calling thread and joins its transaction as any repository call would.
+    public <T> List<T> onEveryShard(IntFunction<T> query) {
+        if (!isSharded()) {
+            return List.of(query.apply(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int selected = shard;
+            futures.add(executor.submit(() -> onShard(selected,
+                    () -> readOnlyTransaction.execute(status -> query.apply(selected)))));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+        return results;
+    }
+
+    /// Runs query in a read-only transaction on one shard. Unsharded, it joins the caller's transaction.
+    public <T> T readFromShard(int shard, Supplier<T> query) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        return onShard(shard, () -> readOnlyTransaction.execute(status -> query.get()));
+    }
+
+    /// Every shard's rows in order, read in parallel and merged; each source must already be sorted by order.
+    /// Each shard is read in a read-only transaction on a thread of its own for as long as the caller takes, so
+    /// long exports do not hold the query pool. Only for sharded deployments; close the result when done.
+    public <T> MergedShardIterator<T> streamEveryShard(IntFunction<Stream<T>> source, Comparator<T> order) {
+        MergedShardIterator<T> merged = new MergedShardIterator<>(shardCount, order);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int selected = shard;
+            merged.addProducer(streamExecutor.submit(() -> onShard(selected, () -> {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<T> rows = source.apply(selected)) {
+                        MergedShardIterator.produce(merged.queue(selected), rows.iterator());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return null;
+            })));
+        }
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            streamExecutor.shutdownNow();
+        }
+    }
+}
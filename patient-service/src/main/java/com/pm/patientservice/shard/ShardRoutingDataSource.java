@@ -0,0 +1,42 @@
+package com.pm.patientservice.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    // Hands out connections to the shard ShardRouter has selected for the current thread, shard 0 when none is.
+    // Like ReadWriteRoutingDataSource it must sit behind a LazyConnectionDataSourceProxy, and the shard must be
+    // selected before a transaction starts and stay selected until it ends.
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+    }
+
+    /// The previously selected shard, or null, to be restored afterwards
+    static Integer select(Integer shard) {
+        Integer previous = CURRENT_SHARD.get();
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+        return previous;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard != null ? shard : 0;
+    }
+}
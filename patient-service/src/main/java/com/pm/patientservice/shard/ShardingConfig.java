@@ -0,0 +1,102 @@
+package com.pm.patientservice.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Configuration
+@ConditionalOnProperty("patient.sharding.shard-urls")
+public class ShardingConfig {
+    // Only active when patient.sharding.shard-urls lists at least one more database. spring.datasource is shard 0
+    // and is migrated by Spring Boot's Flyway as before; the other shards get the same migrations here, so every
+    // shard has the full schema (the directory table just stays empty on shards other than 0).
+    // Shards must start empty: data.sql is not run, and EmailDirectory refuses to start on misplaced patients.
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource shard0DataSource(DataSourceProperties properties,
+                                             @Value("${patient.datasource.replica.url:}") String replicaUrl) {
+        if (!replicaUrl.isEmpty()) {
+            throw new IllegalStateException("patient.sharding.shard-urls and patient.datasource.replica.url "
+                    + "cannot be combined, replicas per shard are not supported");
+        }
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource shard0DataSource,
+                                 DataSourceProperties properties,
+                                 FlywayProperties flywayProperties,
+                                 @Value("${patient.sharding.shard-urls}") List<String> shardUrls,
+                                 @Value("${patient.sharding.username:}") String username,
+                                 @Value("${patient.sharding.password:}") String password,
+                                 @Value("${patient.sharding.maximum-pool-size:10}") int maximumPoolSize) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(shard0DataSource);
+        for (String url : shardUrls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(username.isEmpty() ? properties.determineUsername() : username)
+                    .password(password.isEmpty() ? properties.determinePassword() : password)
+                    .build();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setMaximumPoolSize(maximumPoolSize);
+            migrate(shard, url, flywayProperties);
+            shards.add(shard);
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /// Replaces the data.sql initializer with one that never runs: data.sql seeds patients with fixed ids on
+    /// spring.datasource, i.e. shard 0, while most of them belong to other shards
+    @Bean
+    public SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setMode(DatabaseInitializationMode.NEVER);
+        return new SqlDataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+
+    private static void migrate(DataSource shard, String url, FlywayProperties flywayProperties) {
+        String vendor = DatabaseDriver.fromJdbcUrl(url).getId();
+        String[] locations = flywayProperties.getLocations().stream()
+                .map(location -> location.replace("{vendor}", vendor))
+                .toArray(String[]::new);
+        int applied = Flyway.configure()
+                .dataSource(shard)
+                .locations(locations)
+                .baselineOnMigrate(flywayProperties.isBaselineOnMigrate())
+                .baselineVersion(flywayProperties.getBaselineVersion())
+                .load()
+                .migrate()
+                .migrationsExecuted;
+        log.info("Migrated shard {}: {} migrations applied", url, applied);
+    }
+}
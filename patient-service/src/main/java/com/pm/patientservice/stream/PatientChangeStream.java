@@ -0,0 +1,329 @@
+package com.pm.patientservice.stream;
+
+import com.pm.patientservice.dto.PatientChangeDTO;
+import com.pm.patientservice.dto.PatientChangesResponseDTO;
+import com.pm.patientservice.exception.StreamCapacityExceededException;
+import com.pm.patientservice.service.PatientService;
+import com.pm.patientservice.util.CursorCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+public class PatientChangeStream {
+    // GET /patients/stream. One poller per instance reads the change feed (PatientService.getChanges) and pushes
+    // what it finds to every subscriber, so any number of open dashboards costs one feed query per poll-interval
+    // instead of a list query each. Each event's id is its feed cursor: a client that reconnects with
+    // Last-Event-ID (EventSource does so by itself) first catches up from the feed on its own, then joins the live
+    // events, without missing or repeating a change. Every subscriber has a bounded buffer drained by its own
+    // virtual thread, so a slow client never holds up the poller or the others. When its buffer is full (a bulk
+    // import outruns any client) it goes back to catching up from the feed at its own pace, as it did on connect;
+    // with overflow=disconnect it is disconnected instead and resumes once it reconnects, with overflow=drop-oldest
+    // it loses its oldest buffered events.
+
+    public enum OverflowPolicy { CATCH_UP, DISCONNECT, DROP_OLDEST }
+
+    private static final String EVENT_NAME = "change";
+    private static final StreamEvent CLOSE = new StreamEvent(null, null, null);
+    private static final StreamEvent FELL_BEHIND = new StreamEvent(null, null, null);
+
+    private final PatientService patientService;
+    private final int batchSize;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxSubscribers;
+    private final Duration heartbeat;
+    private final Duration maxDuration;
+    private final Duration reconnectDelay;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    // Guarded by this. position is where the poller continues, null while nobody is subscribed
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private String position;
+
+    private final Counter sent;
+    private final Counter fellBehind;
+    private final Counter disconnected;
+    private final Counter dropped;
+
+    public PatientChangeStream(PatientService patientService,
+                               @Value("${patient.stream.batch-size:200}") int batchSize,
+                               @Value("${patient.stream.buffer-size:1000}") int bufferSize,
+                               @Value("${patient.stream.overflow:catch-up}") OverflowPolicy overflowPolicy,
+                               @Value("${patient.stream.max-subscribers:1000}") int maxSubscribers,
+                               @Value("${patient.stream.heartbeat:15s}") Duration heartbeat,
+                               @Value("${patient.stream.max-duration:30m}") Duration maxDuration,
+                               @Value("${patient.stream.reconnect-delay:3s}") Duration reconnectDelay,
+                               MeterRegistry meterRegistry) {
+        if (bufferSize < batchSize) {
+            // The poller hands over up to batch-size events at once, a smaller buffer would overflow on every batch
+            throw new IllegalArgumentException("patient.stream.buffer-size must be at least patient.stream.batch-size");
+        }
+        this.patientService = patientService;
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeat = heartbeat;
+        this.maxDuration = maxDuration;
+        this.reconnectDelay = reconnectDelay;
+
+        this.sent = meterRegistry.counter("patient.stream.events");
+        this.fellBehind = meterRegistry.counter("patient.stream.overflows", "action", "catch_up");
+        this.disconnected = meterRegistry.counter("patient.stream.overflows", "action", "disconnect");
+        this.dropped = meterRegistry.counter("patient.stream.overflows", "action", "drop");
+        Gauge.builder("patient.stream.subscribers", this, PatientChangeStream::subscriberCount)
+                .register(meterRegistry);
+    }
+
+    /// Opens a stream of the changes after since (a feed cursor, e.g. the Last-Event-ID of an earlier stream),
+    /// or of the changes from now on when since is null. Throws InvalidCursorException for a malformed since and
+    /// StreamCapacityExceededException when patient.stream.max-subscribers streams are open already.
+    public SseEmitter subscribe(String since) {
+        if (since != null) {
+            CursorCodec.decodeChangeKey(since);
+        }
+        SseEmitter emitter = new SseEmitter(maxDuration.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        synchronized (this) {
+            if (subscribers.size() >= maxSubscribers) {
+                throw new StreamCapacityExceededException("Too many open patient streams");
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> remove(subscriber));
+        // Ends the stream after max-duration, the client reconnects and resumes from its Last-Event-ID
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(subscriber));
+        Thread.ofVirtual()
+                .name("patient-stream-" + threadNumber.incrementAndGet())
+                .start(() -> subscriber.run(since));
+        return emitter;
+    }
+
+    /// Reads what the feed has settled since the last poll and hands it to every live subscriber
+    @Scheduled(fixedDelayString = "${patient.stream.poll-interval:1s}")
+    public void poll() {
+        String cursor;
+        synchronized (this) {
+            if (subscribers.isEmpty()) {
+                position = null;
+                return;
+            }
+            cursor = position;
+        }
+        if (cursor == null) {
+            // The first subscriber is still catching up and sets the starting point once it is done
+            return;
+        }
+
+        PatientChangesResponseDTO page;
+        do {
+            page = patientService.getChanges(cursor, batchSize);
+            List<StreamEvent> events = page.getChanges().stream().map(StreamEvent::of).toList();
+            synchronized (this) {
+                for (Iterator<Subscriber> iterator = subscribers.iterator(); iterator.hasNext(); ) {
+                    Subscriber subscriber = iterator.next();
+                    if (!subscriber.offer(events)) {
+                        iterator.remove();
+                    }
+                }
+                position = page.getNextCursor();
+            }
+            cursor = page.getNextCursor();
+        } while (page.isHasMore());
+    }
+
+    public synchronized int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Subscriber> open;
+        synchronized (this) {
+            open = List.copyOf(subscribers);
+            subscribers.clear();
+        }
+        open.forEach(Subscriber::close);
+    }
+
+    private void remove(Subscriber subscriber) {
+        synchronized (this) {
+            subscribers.remove(subscriber);
+        }
+        subscriber.close();
+    }
+
+    /// Moves a catching-up subscriber that has read the feed up to cursor over to the live events. false while the
+    /// poller is still ahead of cursor, the subscriber then has to read on from the feed first.
+    private synchronized boolean join(Subscriber subscriber, String cursor) {
+        if (position == null) {
+            position = cursor;
+        }
+        CursorCodec.ChangeKey caughtUp = CursorCodec.decodeChangeKey(cursor);
+        if (caughtUp.compareTo(CursorCodec.decodeChangeKey(position)) < 0) {
+            return false;
+        }
+        subscriber.joinedAt = caughtUp;
+        return true;
+    }
+
+    /// Also joins a subscriber whose catch-up read after cursor came back empty while the poller stayed at polled:
+    /// nothing has settled between cursor and position then. Without this, a client resuming from its last change
+    /// behind a head cursor (seq, ffffffff-...) would re-read the empty feed in a tight loop until the next change.
+    private synchronized boolean joinIdle(Subscriber subscriber, String cursor, String polled) {
+        if (!Objects.equals(position, polled)) {
+            return false;
+        }
+        subscriber.joinedAt = CursorCodec.decodeChangeKey(cursor);
+        return true;
+    }
+
+    private synchronized String position() {
+        return position;
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> buffer;
+        // Set under the stream's lock while the subscriber is live: the poller fills buffer with the events after it.
+        // null while the subscriber catches up from the feed.
+        private CursorCodec.ChangeKey joinedAt;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            // One slot more than the configured size, so FELL_BEHIND or CLOSE always fits
+            this.buffer = new ArrayBlockingQueue<>(bufferSize + 1);
+        }
+
+        private void run(String since) {
+            try {
+                String cursor = since != null ? since : patientService.getChangesHead();
+                // Sets the client's Last-Event-ID before the first change, so even an idle stream resumes correctly
+                emitter.send(SseEmitter.event().id(cursor).reconnectTime(reconnectDelay.toMillis()).comment("open"));
+                while (!closed) {
+                    while (!closed && !join(this, cursor)) {
+                        String polled = position();
+                        PatientChangesResponseDTO page = patientService.getChanges(cursor, batchSize);
+                        if (page.getChanges().isEmpty() && joinIdle(this, cursor, polled)) {
+                            break;
+                        }
+                        for (PatientChangeDTO change : page.getChanges()) {
+                            send(StreamEvent.of(change));
+                        }
+                        cursor = page.getNextCursor();
+                    }
+                    cursor = sendLive(cursor);
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the stream was completed meanwhile
+                log.debug("Patient stream closed: {}", e.getMessage());
+                remove(this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                remove(this);
+            } catch (RuntimeException e) {
+                log.warn("Patient stream failed", e);
+                remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        /// Sends the live events from buffer until the subscriber is closed or falls behind; returns the cursor of
+        /// the last event sent, which catching up continues from
+        private String sendLive(String cursor) throws IOException, InterruptedException {
+            while (!closed) {
+                StreamEvent event = buffer.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                if (event == CLOSE || event == FELL_BEHIND) {
+                    break;
+                }
+                if (event == null) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    send(event);
+                    cursor = event.cursor();
+                }
+            }
+            return cursor;
+        }
+
+        /// Called by the poller under the stream's lock. false when the subscriber has to be dropped.
+        private boolean offer(List<StreamEvent> events) {
+            if (joinedAt == null) {
+                return true;
+            }
+            for (StreamEvent event : events) {
+                if (event.key().compareTo(joinedAt) <= 0) {
+                    continue;
+                }
+                if (buffer.size() < bufferSize) {
+                    buffer.add(event);
+                } else if (overflowPolicy == OverflowPolicy.CATCH_UP) {
+                    // Everything after the events already buffered is read from the feed again
+                    fellBehind.increment();
+                    joinedAt = null;
+                    buffer.add(FELL_BEHIND);
+                    return true;
+                } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    buffer.poll();
+                    buffer.add(event);
+                    dropped.increment();
+                } else {
+                    disconnected.increment();
+                    log.warn("Disconnecting a patient stream that fell {} events behind", bufferSize);
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void send(StreamEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(event.cursor())
+                    .name(EVENT_NAME)
+                    .data(event.change(), MediaType.APPLICATION_JSON));
+            sent.increment();
+        }
+
+        /// Never blocks: the sender thread completes the emitter once it takes CLOSE
+        private void close() {
+            if (!closed) {
+                closed = true;
+                buffer.clear();
+                buffer.offer(CLOSE);
+            }
+        }
+    }
+
+    private record StreamEvent(CursorCodec.ChangeKey key, String cursor, PatientChangeDTO change) {
+
+        static StreamEvent of(PatientChangeDTO change) {
+            return new StreamEvent(new CursorCodec.ChangeKey(change.getChangeSeq(), change.getId()),
+                    CursorCodec.encode(change.getChangeSeq(), change.getId()), change);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.pm.patientservice.util;
+
+import com.pm.patientservice.exception.InvalidCursorException;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+public class CursorCodec {
+    // Continuation tokens handed to API clients. They are opaque on purpose (base64url of the raw key),
+    // so clients pass them back unchanged and the underlying sort key can change without breaking anyone.
+
+    // Change feed cursors are stored by clients for a long time, a leading tag keeps them from being
+    // mistaken for (or by) any other cursor
+    private static final byte CHANGE_KEY = 'C';
+
+    public static String encode(UUID id) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static String encode(LocalDate date, UUID id) {
+        ByteBuffer buffer = ByteBuffer.allocate(24);
+        buffer.putLong(date.toEpochDay());
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static String encode(long seq, UUID id) {
+        ByteBuffer buffer = ByteBuffer.allocate(25);
+        buffer.put(CHANGE_KEY);
+        buffer.putLong(seq);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static String encode(int offset) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(4).putInt(offset).array());
+    }
+
+    /// Throws InvalidCursorException for anything that was not produced by encode
+    public static UUID decodeUuid(String cursor) {
+        ByteBuffer buffer = ByteBuffer.wrap(decode(cursor, 16));
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /// Throws InvalidCursorException for anything that was not produced by encode
+    public static DateKey decodeDateKey(String cursor) {
+        ByteBuffer buffer = ByteBuffer.wrap(decode(cursor, 24));
+        long epochDay = buffer.getLong();
+        if (epochDay < LocalDate.MIN.toEpochDay() || epochDay > LocalDate.MAX.toEpochDay()) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        return new DateKey(LocalDate.ofEpochDay(epochDay), new UUID(buffer.getLong(), buffer.getLong()));
+    }
+
+    /// Throws InvalidCursorException for anything that was not produced by encode
+    public static ChangeKey decodeChangeKey(String cursor) {
+        ByteBuffer buffer = ByteBuffer.wrap(decode(cursor, 25));
+        if (buffer.get() != CHANGE_KEY) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        return new ChangeKey(buffer.getLong(), new UUID(buffer.getLong(), buffer.getLong()));
+    }
+
+    /// Throws InvalidCursorException for anything that was not produced by encode
+    public static int decodeOffset(String cursor) {
+        int offset = ByteBuffer.wrap(decode(cursor, 4)).getInt();
+        if (offset < 0) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        return offset;
+    }
+
+    private static byte[] decode(String cursor, int length) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        if (bytes.length != length) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        return bytes;
+    }
+
+    /// Position in a list ordered by a date column and then id
+    public record DateKey(LocalDate date, UUID id) {
+    }
+
+    /// Position in the change feed, ordered like the feed: by seq, then by id as the databases sort UUIDs
+    public record ChangeKey(long seq, UUID id) implements Comparable<ChangeKey> {
+        @Override
+        public int compareTo(ChangeKey other) {
+            int bySeq = Long.compare(seq, other.seq);
+            if (bySeq != 0) {
+                return bySeq;
+            }
+            int high = Long.compareUnsigned(id.getMostSignificantBits(), other.id.getMostSignificantBits());
+            return high != 0
+                    ? high
+                    : Long.compareUnsigned(id.getLeastSignificantBits(), other.id.getLeastSignificantBits());
+        }
+    }
+}
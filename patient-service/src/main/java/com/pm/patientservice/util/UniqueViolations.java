@@ -0,0 +1,31 @@
+package com.pm.patientservice.util;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+public class UniqueViolations {
+    // Tells a unique key violation on a given column apart from every other integrity violation (a value too long
+    // for its column, a missing NOT NULL value), which must not be reported as a duplicate. Both Postgres
+    // ("Key (email)=...") and H2 ("... ON PUBLIC.PATIENT(EMAIL ...)") name the column in the message.
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    /// Whether e, or any exception it was caused by, is a unique violation mentioning column
+    public static boolean isOn(DataIntegrityViolationException e, String column) {
+        String name = column.toLowerCase(Locale.ROOT);
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                // JDBC batches chain the per-statement failures as next exceptions
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (UNIQUE_VIOLATION.equals(next.getSQLState()) && next.getMessage() != null
+                            && next.getMessage().toLowerCase(Locale.ROOT).contains(name)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,2 @@
+-- H2 has no expression or trigram indexes, plain indexes keep local search reasonably quick
+CREATE INDEX IF NOT EXISTS idx_patient_name ON patient (name);
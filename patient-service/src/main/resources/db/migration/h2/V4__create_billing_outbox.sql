@@ -0,0 +1,14 @@
+-- Billing accounts still to be created, written in the same transaction as the patient and drained by
+-- BillingOutboxRelay. One row per patient, deleted once billing has confirmed the account.
+CREATE TABLE IF NOT EXISTS billing_outbox
+(
+    id              UUID PRIMARY KEY,
+    patient_id      UUID UNIQUE                 NOT NULL,
+    name            VARCHAR(255)                NOT NULL,
+    email           VARCHAR(255)                NOT NULL,
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    attempts        INT                         NOT NULL,
+    next_attempt_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_billing_outbox_next_attempt ON billing_outbox (next_attempt_at);
@@ -0,0 +1,17 @@
+-- GET /patients/changes: every write stamps the patient with a value of patient_change_seq, deletes leave a
+-- tombstone with one. Existing rows start at 0, so a client's first sync returns them all once.
+CREATE SEQUENCE IF NOT EXISTS patient_change_seq START WITH 1;
+
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_patient_change_seq ON patient (change_seq, id);
+
+CREATE TABLE IF NOT EXISTS patient_tombstone
+(
+    patient_id UUID PRIMARY KEY,
+    change_seq BIGINT                      NOT NULL,
+    deleted_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_patient_tombstone_change_seq ON patient_tombstone (change_seq, patient_id);
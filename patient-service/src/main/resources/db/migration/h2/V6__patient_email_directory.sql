@@ -0,0 +1,7 @@
+-- Email directory for sharded deployments: patients are spread over several databases, so patient.email's unique
+-- constraint only covers one shard. Every email is claimed here, on shard 0, before its patient is written.
+CREATE TABLE IF NOT EXISTS patient_email
+(
+    email      VARCHAR(255) PRIMARY KEY,
+    patient_id UUID NOT NULL
+);
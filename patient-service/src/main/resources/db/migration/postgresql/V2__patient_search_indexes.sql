@@ -0,0 +1,9 @@
+-- GET /patients/search matches case-insensitively on name and email.
+-- Prefix lookups (type-ahead) use the text_pattern_ops b-trees, substring lookups the trigram GIN indexes.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_patient_name_prefix ON patient (lower(name) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_patient_email_prefix ON patient (lower(email) text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS idx_patient_name_trgm ON patient USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_patient_email_trgm ON patient USING gin (lower(email) gin_trgm_ops);
@@ -0,0 +1,4 @@
+-- GET /patients?registeredFrom=&registeredTo=&bornBefore= pages along one of these dates, the trailing id
+-- makes the (date, id) keyset an index range scan as well.
+CREATE INDEX IF NOT EXISTS idx_patient_registered_date ON patient (registered_date, id);
+CREATE INDEX IF NOT EXISTS idx_patient_date_of_birth ON patient (date_of_birth, id);
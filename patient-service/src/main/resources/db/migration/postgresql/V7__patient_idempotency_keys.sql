@@ -0,0 +1,12 @@
+-- Idempotency-Key of POST /patients, on shard 0 when patients are sharded. A key is claimed (response null) before
+-- the patient is created and completed with the response afterwards, so a retry returns that response instead of
+-- creating the patient again. Rows are purged once they are older than patient.idempotency.ttl.
+CREATE TABLE IF NOT EXISTS patient_idempotency_key
+(
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash    VARCHAR(64)                 NOT NULL,
+    response        VARCHAR(2000),
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_patient_idempotency_key_created_at ON patient_idempotency_key (created_at);
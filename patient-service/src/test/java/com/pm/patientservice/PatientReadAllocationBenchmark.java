@@ -0,0 +1,119 @@
+package com.pm.patientservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.patientservice.dto.PatientResponseDTO;
+import com.pm.patientservice.model.Patient;
+import com.pm.patientservice.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/// Not part of the regular build (the name does not match surefire's includes), run it explicitly with
+/// mvn test -Dtest=PatientReadAllocationBenchmark
+@SpringBootTest(properties = "grpc.server.port=0")
+class PatientReadAllocationBenchmark {
+    // Bytes allocated per row on the GET /patients read path: the entity path it replaced (managed Patient
+    // entities copied into a DTO of Strings) against the PATIENT_DTO projection, with and without writing the
+    // page as JSON. Measured with the JVM's per-thread allocation counter; H2 runs in-process, so its own
+    // allocations are included on both sides.
+
+    private static final int ROWS = 10_000;
+    private static final int PAGE_SIZE = 200;
+    private static final int WARMUP_PAGES = 2_000;
+    private static final int PAGES = 2_000;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void seed() {
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from patient", Integer.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = existing; i < ROWS; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), "Patient " + i, "patient" + i + "@example.com",
+                    i + " Main St, Springfield", Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i)),
+                    Date.valueOf(LocalDate.of(2024, 1, 1))});
+        }
+        jdbcTemplate.batchUpdate("insert into patient (id, name, email, address, date_of_birth, registered_date)"
+                + " values (?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @Test
+    void bytesPerRow() throws IOException {
+        double entities = measure(false, this::entityPage);
+        double projection = measure(false, this::projectionPage);
+        double entitiesJson = measure(true, this::entityPage);
+        double projectionJson = measure(true, this::projectionPage);
+
+        System.out.printf("%nbytes allocated per row, %d-row pages%n", PAGE_SIZE);
+        System.out.printf("                          query + DTO   + JSON%n");
+        System.out.printf("entities + PatientMapper  %11.0f  %6.0f%n", entities, entitiesJson);
+        System.out.printf("PATIENT_DTO projection    %11.0f  %6.0f%n%n", projection, projectionJson);
+    }
+
+    private double measure(boolean writeJson, PageReader reader) throws IOException {
+        for (int i = 0; i < WARMUP_PAGES; i++) {
+            read(writeJson, reader);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < PAGES; i++) {
+            read(writeJson, reader);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / (double) (PAGES * PAGE_SIZE);
+    }
+
+    private void read(boolean writeJson, PageReader reader) throws IOException {
+        List<?> page = reader.read();
+        if (writeJson) {
+            objectMapper.writeValue(OutputStream.nullOutputStream(), page);
+        }
+    }
+
+    /// The read path before projections
+    private List<LegacyPatientResponseDTO> entityPage() {
+        List<Patient> patients = entityManager
+                .createQuery("select p from Patient p order by p.id", Patient.class)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList();
+        return patients.stream().map(LegacyPatientResponseDTO::of).toList();
+    }
+
+    private List<PatientResponseDTO> projectionPage() {
+        return patientRepository.findFirstPage(Limit.of(PAGE_SIZE));
+    }
+
+    private interface PageReader {
+        List<?> read();
+    }
+
+    /// PatientResponseDTO as it was before projections, all fields Strings
+    private record LegacyPatientResponseDTO(String id, String name, String email, String address, String birthDate) {
+        static LegacyPatientResponseDTO of(Patient patient) {
+            return new LegacyPatientResponseDTO(patient.getId().toString(), patient.getName(), patient.getEmail(),
+                    patient.getAddress(), patient.getBirthDate().toString());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.pm.patientservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/// Not part of the regular build (the name does not match surefire's includes), run it explicitly with
+/// mvn test -Dtest=VirtualThreadsBenchmark
+class VirtualThreadsBenchmark {
+    // Boots patient-service with platform and then with virtual request threads and drives both with far more
+    // concurrent requests than Tomcat has threads. Every request blocks on a simulated downstream call, the way
+    // createPatient blocks on JDBC and Kafka, so the difference comes from how many requests can wait at once.
+
+    private static final int CONCURRENCY = 1000;
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int REQUESTS = 10_000;
+    private static final Duration DOWNSTREAM_LATENCY = Duration.ofMillis(250);
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n%d requests, %d concurrent, %d ms downstream latency%n",
+                REQUESTS, CONCURRENCY, DOWNSTREAM_LATENCY.toMillis());
+        System.out.printf("platform threads: %8.0f req/s  p50 %4d ms  p99 %4d ms%n",
+                platform.throughput(), platform.p50Millis(), platform.p99Millis());
+        System.out.printf("virtual threads:  %8.0f req/s  p50 %4d ms  p99 %4d ms%n%n",
+                virtual.throughput(), virtual.p50Millis(), virtual.p99Millis());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                PatientServiceApplication.class, DownstreamEndpoint.class)
+                .run("--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.port=0",
+                        "--grpc.server.port=0",
+                        "--logging.level.root=WARN")) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            URI uri = URI.create("http://localhost:" + port + "/benchmark/downstream");
+
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient httpClient = HttpClient.newBuilder().executor(clients).build()) {
+                load(httpClient, uri, WARMUP_REQUESTS);
+                long startedAt = System.nanoTime();
+                long[] latencies = load(httpClient, uri, REQUESTS);
+                long elapsed = System.nanoTime() - startedAt;
+
+                Arrays.sort(latencies);
+                return new Result(REQUESTS * 1e9 / elapsed,
+                        latencies[latencies.length / 2] / 1_000_000,
+                        latencies[(int) (latencies.length * 0.99)] / 1_000_000);
+            }
+        }
+    }
+
+    /// CONCURRENCY clients sending requests back to back, returns every request's latency in nanoseconds
+    private static long[] load(HttpClient httpClient, URI uri, int requests) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < CONCURRENCY; client++) {
+                clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        long startedAt = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - startedAt;
+                    }
+                });
+            }
+        }
+        assertEquals(0, failures.get(), "failed requests");
+        return latencies;
+    }
+
+    /// Registered explicitly as a source rather than annotated, so component scanning in other tests skips it
+    static class DownstreamEndpoint {
+
+        @Bean
+        RouterFunction<ServerResponse> downstreamRoute() {
+            return RouterFunctions.route()
+                    .GET("/benchmark/downstream", request -> {
+                        Thread.sleep(DOWNSTREAM_LATENCY);
+                        return ServerResponse.ok().body("ok");
+                    })
+                    .build();
+        }
+    }
+
+    private record Result(double throughput, long p50Millis, long p99Millis) {
+    }
+}
@@ -0,0 +1,209 @@
+package com.pm.patientservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.patientservice.dto.PatientRequestDTO;
+import com.pm.patientservice.dto.PatientResponseDTO;
+import com.pm.patientservice.exception.IdempotencyKeyMismatchException;
+import com.pm.patientservice.exception.IdempotentRequestInProgressException;
+import com.pm.patientservice.exception.InvalidIdempotencyKeyException;
+import com.pm.patientservice.model.IdempotencyKey;
+import com.pm.patientservice.repository.IdempotencyKeyRepository;
+import com.pm.patientservice.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private static final Duration ABANDONED_AFTER = Duration.ofMinutes(5);
+
+    /// patient_idempotency_key, shared by every store like the database is shared by every instance
+    private final Map<String, IdempotencyKey> rows = new ConcurrentHashMap<>();
+    private final IdempotencyKeyRepository keyRepository = inMemoryRepository();
+    private final ShardRouter shardRouter = directRouter();
+
+    private final IdempotencyStore store = newStore();
+    private final AtomicInteger creates = new AtomicInteger();
+
+    @Test
+    void firstRequestCreates() {
+        IdempotencyStore.Result result = store.createOnce("key-1", request("Jane"), this::create);
+
+        assertFalse(result.replayed());
+        assertEquals(1, creates.get());
+        assertTrue(rows.get("key-1").getResponse() != null);
+    }
+
+    @Test
+    void retryOnTheSameInstanceIsReplayedFromMemory() {
+        PatientResponseDTO first = store.createOnce("key-1", request("Jane"), this::create).response();
+
+        rows.clear();
+        IdempotencyStore.Result retry = store.createOnce("key-1", request("Jane"), this::create);
+
+        assertTrue(retry.replayed());
+        assertEquals(first.getId(), retry.response().getId());
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void retryOnAnotherInstanceIsReplayedFromTheDatabase() {
+        PatientResponseDTO first = store.createOnce("key-1", request("Jane"), this::create).response();
+
+        IdempotencyStore.Result retry = newStore().createOnce("key-1", request("Jane"), this::create);
+
+        assertTrue(retry.replayed());
+        assertEquals(first.getId(), retry.response().getId());
+        assertEquals(first.getBirthDate(), retry.response().getBirthDate());
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        store.createOnce("key-1", request("Jane"), this::create);
+
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> store.createOnce("key-1", request("John"), this::create));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> newStore().createOnce("key-1", request("John"), this::create));
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void retryWhileTheFirstRequestRunsIsToldToWait() {
+        IdempotencyStore other = newStore();
+
+        store.createOnce("key-1", request("Jane"), () -> {
+            assertThrows(IdempotentRequestInProgressException.class,
+                    () -> other.createOnce("key-1", request("Jane"), this::create));
+            return create();
+        });
+
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void failedRequestReleasesItsKey() {
+        assertThrows(IllegalStateException.class, () -> store.createOnce("key-1", request("Jane"), () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertFalse(rows.containsKey("key-1"));
+
+        IdempotencyStore.Result retry = store.createOnce("key-1", request("Jane"), this::create);
+
+        assertFalse(retry.replayed());
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void abandonedClaimIsTakenOverByTheSameRequest() {
+        store.createOnce("key-0", request("Jane"), this::create);
+        String requestHash = rows.get("key-0").getRequestHash();
+        rows.put("key-1", new IdempotencyKey("key-1", requestHash,
+                Instant.now().minus(ABANDONED_AFTER).minusSeconds(1)));
+
+        IdempotencyStore.Result result = store.createOnce("key-1", request("Jane"), this::create);
+
+        assertFalse(result.replayed());
+        assertEquals(2, creates.get());
+    }
+
+    @Test
+    void rejectsBlankAndOverlongKeys() {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> store.createOnce(" ", request("Jane"), this::create));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> store.createOnce(
+                "k".repeat(IdempotencyStore.MAX_KEY_LENGTH + 1), request("Jane"), this::create));
+        assertEquals(0, creates.get());
+    }
+
+    private PatientResponseDTO create() {
+        creates.incrementAndGet();
+        PatientResponseDTO response = new PatientResponseDTO();
+        response.setId(UUID.randomUUID());
+        response.setName("Jane Doe");
+        response.setEmail("jane@example.com");
+        response.setAddress("1 Main Street");
+        response.setBirthDate(LocalDate.of(1990, 5, 17));
+        return response;
+    }
+
+    private static PatientRequestDTO request(String name) {
+        PatientRequestDTO request = new PatientRequestDTO();
+        request.setName(name);
+        request.setEmail("jane@example.com");
+        request.setAddress("1 Main Street");
+        request.setBirthDate("1990-05-17");
+        request.setRegisteredDate("2024-01-01");
+        return request;
+    }
+
+    private IdempotencyStore newStore() {
+        return new IdempotencyStore(shardRouter, keyRepository, new ObjectMapper().findAndRegisterModules(),
+                100, Duration.ofHours(24), ABANDONED_AFTER, new SimpleMeterRegistry());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ShardRouter directRouter() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.onDirectory(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+        return shardRouter;
+    }
+
+    private IdempotencyKeyRepository inMemoryRepository() {
+        IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            IdempotencyKey claim = invocation.getArgument(0);
+            if (rows.putIfAbsent(claim.getKey(), claim) != null) {
+                throw new DataIntegrityViolationException("duplicate key " + claim.getKey());
+            }
+            return claim;
+        });
+        when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        when(repository.complete(anyString(), anyString())).thenAnswer(invocation -> {
+            IdempotencyKey row = rows.get(invocation.<String>getArgument(0));
+            if (row == null) {
+                return 0;
+            }
+            ReflectionTestUtils.setField(row, "response", invocation.getArgument(1));
+            return 1;
+        });
+        when(repository.release(anyString())).thenAnswer(invocation -> {
+            IdempotencyKey row = rows.get(invocation.<String>getArgument(0));
+            return row != null && row.getResponse() == null && rows.remove(row.getKey(), row) ? 1 : 0;
+        });
+        when(repository.takeOver(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            IdempotencyKey row = rows.get(invocation.<String>getArgument(0));
+            Instant abandonedBefore = invocation.getArgument(3);
+            if (row == null || row.getResponse() != null || !row.getRequestHash().equals(invocation.getArgument(1))
+                    || !row.getCreatedAt().isBefore(abandonedBefore)) {
+                return 0;
+            }
+            ReflectionTestUtils.setField(row, "createdAt", invocation.getArgument(2));
+            return 1;
+        });
+        return repository;
+    }
+}
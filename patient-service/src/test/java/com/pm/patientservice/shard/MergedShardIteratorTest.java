@@ -0,0 +1,142 @@
+package com.pm.patientservice.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergedShardIteratorTest {
+
+    @Test
+    void mergesSortedShardsInOrder() throws Exception {
+        List<Integer> merged = drain(merge(List.of(1, 4, 7, 7), List.of(), List.of(2, 3, 7, 9)));
+
+        assertEquals(List.of(1, 2, 3, 4, 7, 7, 7, 9), merged);
+    }
+
+    @Test
+    void mergesShardsLargerThanTheirQueues() throws Exception {
+        int rows = MergedShardIterator.QUEUE_CAPACITY * 4;
+        List<Integer> even = IntStream.range(0, rows).map(i -> i * 2).boxed().toList();
+        List<Integer> odd = IntStream.range(0, rows).map(i -> i * 2 + 1).boxed().toList();
+
+        List<Integer> merged = drain(merge(even, odd));
+
+        assertEquals(IntStream.range(0, rows * 2).boxed().toList(), merged);
+    }
+
+    @Test
+    void emptyShardsGiveAnEmptyIterator() throws Exception {
+        try (MergedShardIterator<Integer> iterator = merge(List.of(), List.of())) {
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    @Test
+    void aShardFailureReachesTheReader() throws Exception {
+        IllegalStateException failure = new IllegalStateException("shard 1 is down");
+        Iterator<Integer> failing = new Iterator<>() {
+            private int next = 10;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if (next > 11) {
+                    throw failure;
+                }
+                return next++;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (MergedShardIterator<Integer> iterator = new MergedShardIterator<>(2, Comparator.<Integer>naturalOrder())) {
+            start(executor, iterator, 0, List.of(1, 2, 3).iterator());
+            start(executor, iterator, 1, failing);
+
+            List<Integer> read = new ArrayList<>();
+            IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+                while (iterator.hasNext()) {
+                    read.add(iterator.next());
+                }
+            });
+
+            assertSame(failure, thrown);
+            // Rows ahead of the failure in merge order are still handed out
+            assertTrue(read.containsAll(List.of(1, 2, 3)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closeStopsProducersBlockedOnAFullQueue() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Iterator<Integer> endless = IntStream.iterate(0, i -> i + 1).iterator();
+        try {
+            MergedShardIterator<Integer> iterator = new MergedShardIterator<>(1, Comparator.<Integer>naturalOrder());
+            iterator.addProducer(executor.submit(() -> {
+                try {
+                    MergedShardIterator.produce(iterator.queue(0), endless);
+                } catch (InterruptedException e) {
+                    stopped.countDown();
+                }
+            }));
+            assertEquals(0, (int) iterator.next());
+
+            iterator.close();
+
+            assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @SafeVarargs
+    private static MergedShardIterator<Integer> merge(List<Integer>... shards) {
+        ExecutorService executor = Executors.newFixedThreadPool(shards.length);
+        MergedShardIterator<Integer> iterator = new MergedShardIterator<>(shards.length, Comparator.<Integer>naturalOrder());
+        for (int shard = 0; shard < shards.length; shard++) {
+            start(executor, iterator, shard, shards[shard].iterator());
+        }
+        executor.shutdown();
+        return iterator;
+    }
+
+    private static void start(ExecutorService executor, MergedShardIterator<Integer> iterator, int shard,
+                              Iterator<Integer> rows) {
+        Future<?> producer = executor.submit(() -> {
+            MergedShardIterator.produce(iterator.queue(shard), rows);
+            return null;
+        });
+        iterator.addProducer(producer);
+    }
+
+    private static List<Integer> drain(MergedShardIterator<Integer> iterator) {
+        try (iterator) {
+            List<Integer> rows = new ArrayList<>();
+            iterator.forEachRemaining(rows::add);
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pm.patientservice.stream;
+
+import com.pm.patientservice.dto.PatientChangesResponseDTO;
+import com.pm.patientservice.service.PatientService;
+import com.pm.patientservice.util.CursorCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PatientChangeStreamTest {
+
+    private static final long LAST_SEQ = 41;
+
+    private final PatientService patientService = mock(PatientService.class);
+    private final PatientChangeStream stream = new PatientChangeStream(patientService, 200, 1000,
+            PatientChangeStream.OverflowPolicy.CATCH_UP, 10, Duration.ofSeconds(15), Duration.ofMinutes(30),
+            Duration.ofSeconds(3), new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void resumeBehindAnIdleHeadCursorJoinsAfterOneEmptyRead() {
+        // The head cursor sorts after every change with its seq, the client's Last-Event-ID is a real change key
+        String head = CursorCodec.encode(LAST_SEQ, new UUID(-1, -1));
+        String lastEventId = CursorCodec.encode(LAST_SEQ, UUID.fromString("123e4567-e89b-12d3-a456-426614174000"));
+        when(patientService.getChangesHead()).thenReturn(head);
+        when(patientService.getChanges(anyString(), anyInt()))
+                .thenAnswer(invocation -> emptyPage(invocation.getArgument(0)));
+
+        // The first subscriber sets the poller's position to the head cursor, and nothing changes afterwards
+        stream.subscribe(null);
+        verify(patientService, timeout(1000)).getChangesHead();
+
+        stream.subscribe(lastEventId);
+
+        verify(patientService, timeout(1000)).getChanges(eq(lastEventId), anyInt());
+        // Joined the live events instead of re-reading the empty feed
+        verify(patientService, after(500).times(1)).getChanges(eq(lastEventId), anyInt());
+    }
+
+    private static PatientChangesResponseDTO emptyPage(String since) {
+        PatientChangesResponseDTO page = new PatientChangesResponseDTO();
+        page.setChanges(List.of());
+        page.setNextCursor(since);
+        page.setHasMore(false);
+        return page;
+    }
+}
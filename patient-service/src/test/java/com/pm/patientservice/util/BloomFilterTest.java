@@ -0,0 +1,85 @@
+package com.pm.patientservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int ENTRIES = 10_000;
+
+    @Test
+    void hasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.add("patient" + i + "@example.com");
+        }
+
+        for (int i = 0; i < ENTRIES; i++) {
+            assertTrue(filter.mightContain("patient" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.add("patient" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < ENTRIES; i++) {
+            if (filter.mightContain("other" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < ENTRIES * 0.02, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+
+        assertFalse(filter.mightContain("jane@example.com"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    void isSizedForTheExpectedEntries() {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+
+        // About 9.6 bits and 7 hashes per entry for a 1% false-positive probability
+        assertEquals(0, filter.bitCount() % 64);
+        assertTrue(filter.bitCount() >= 95_851 && filter.bitCount() < 95_851 + 64);
+        assertEquals(7, filter.hashCount());
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        BloomFilter filter = new BloomFilter(ENTRIES, 0.01);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = offset; i < ENTRIES; i += 4) {
+                    filter.add("patient" + i + "@example.com");
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < ENTRIES; i++) {
+            assertTrue(filter.mightContain("patient" + i + "@example.com"));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.pm.patientservice.util;
+
+import com.pm.patientservice.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorCodecTest {
+
+    private static final UUID ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    @Test
+    void uuidCursorRoundTrips() {
+        assertEquals(ID, CursorCodec.decodeUuid(CursorCodec.encode(ID)));
+    }
+
+    @Test
+    void dateKeyCursorRoundTrips() {
+        LocalDate date = LocalDate.of(1990, 5, 17);
+
+        assertEquals(new CursorCodec.DateKey(date, ID), CursorCodec.decodeDateKey(CursorCodec.encode(date, ID)));
+    }
+
+    @Test
+    void changeKeyCursorRoundTrips() {
+        assertEquals(new CursorCodec.ChangeKey(42, ID), CursorCodec.decodeChangeKey(CursorCodec.encode(42L, ID)));
+    }
+
+    @Test
+    void offsetCursorRoundTrips() {
+        assertEquals(250, CursorCodec.decodeOffset(CursorCodec.encode(250)));
+    }
+
+    @Test
+    void cursorsAreUrlSafe() {
+        String cursor = CursorCodec.encode(new UUID(-1, -1));
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeUuid("not a cursor!"));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeUuid(""));
+    }
+
+    @Test
+    void rejectsCursorsOfAnotherKind() {
+        String uuidCursor = CursorCodec.encode(ID);
+
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeDateKey(uuidCursor));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeChangeKey(uuidCursor));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeOffset(uuidCursor));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeUuid(CursorCodec.encode(250)));
+    }
+
+    @Test
+    void rejectsChangeCursorsWithoutTheirTag() {
+        ByteBuffer buffer = ByteBuffer.allocate(25);
+        buffer.put((byte) 'X');
+        buffer.putLong(42);
+        buffer.putLong(ID.getMostSignificantBits());
+        buffer.putLong(ID.getLeastSignificantBits());
+
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeChangeKey(encode(buffer.array())));
+    }
+
+    @Test
+    void rejectsNegativeOffsets() {
+        assertThrows(InvalidCursorException.class,
+                () -> CursorCodec.decodeOffset(encode(ByteBuffer.allocate(4).putInt(-1).array())));
+    }
+
+    @Test
+    void rejectsDatesOutOfRange() {
+        ByteBuffer buffer = ByteBuffer.allocate(24);
+        buffer.putLong(Long.MAX_VALUE);
+        buffer.putLong(ID.getMostSignificantBits());
+        buffer.putLong(ID.getLeastSignificantBits());
+
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decodeDateKey(encode(buffer.array())));
+    }
+
+    @Test
+    void changeKeysOrderBySeqThenUnsignedId() {
+        UUID low = new UUID(0x7fffffffffffffffL, 0);
+        UUID high = new UUID(0x8000000000000000L, 0);
+
+        assertTrue(new CursorCodec.ChangeKey(1, high).compareTo(new CursorCodec.ChangeKey(2, low)) < 0);
+        assertTrue(new CursorCodec.ChangeKey(1, low).compareTo(new CursorCodec.ChangeKey(1, high)) < 0);
+        assertEquals(0, new CursorCodec.ChangeKey(1, ID).compareTo(new CursorCodec.ChangeKey(1, ID)));
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,64 @@
+package com.pm.patientservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UniqueViolationsTest {
+
+    @Test
+    void recognisesAPostgresUniqueViolationOnTheColumn() {
+        SQLException duplicate = new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"patient_email_key\"", "23505");
+
+        assertTrue(UniqueViolations.isOn(wrap(duplicate), "email"));
+    }
+
+    @Test
+    void recognisesAnH2UniqueViolationOnTheColumn() {
+        SQLException duplicate = new SQLException(
+                "Unique index or primary key violation: \"PUBLIC.CONSTRAINT_INDEX_8 ON PUBLIC.PATIENT(EMAIL NULLS FIRST)",
+                "23505");
+
+        assertTrue(UniqueViolations.isOn(wrap(duplicate), "email"));
+    }
+
+    @Test
+    void looksAtTheNextExceptionsOfABatch() {
+        BatchUpdateException batch = new BatchUpdateException("Batch entry 3 was aborted", "23505", new int[0]);
+        batch.setNextException(new SQLException("Key (email)=(jane@example.com) already exists.", "23505"));
+
+        assertTrue(UniqueViolations.isOn(wrap(batch), "email"));
+    }
+
+    @Test
+    void ignoresValuesTooLongForTheirColumn() {
+        SQLException tooLong = new SQLException(
+                "ERROR: value too long for type character varying(255) in column email", "22001");
+
+        assertFalse(UniqueViolations.isOn(wrap(tooLong), "email"));
+    }
+
+    @Test
+    void ignoresUniqueViolationsOnOtherColumns() {
+        SQLException duplicateId = new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"patient_pkey\"", "23505");
+
+        assertFalse(UniqueViolations.isOn(wrap(duplicateId), "email"));
+    }
+
+    @Test
+    void ignoresViolationsWithoutAnSqlCause() {
+        assertFalse(UniqueViolations.isOn(new DataIntegrityViolationException("email"), "email"));
+    }
+
+    private static DataIntegrityViolationException wrap(SQLException cause) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new RuntimeException("constraint violation", cause));
+    }
+}